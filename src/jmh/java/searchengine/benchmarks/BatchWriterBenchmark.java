@@ -0,0 +1,103 @@
+package searchengine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.config.BatchWriterType;
+import searchengine.model.*;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SitePartitions;
+import searchengine.repository.SiteRepository;
+import searchengine.repository.batch.BatchWriter;
+import searchengine.repository.batch.CopyBatchWriter;
+import searchengine.repository.batch.JpaBatchWriter;
+import searchengine.services.parsing.LemmaDictionary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second written by the persist stage: a batch of pages and their index rows.
+ * The rows are written to a scratch site that is removed after the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BatchWriterBenchmark {
+
+    private static final int PAGES = 100;
+    private static final int LEMMAS_PER_PAGE = 50;
+    private static final int ROWS = PAGES * (1 + LEMMAS_PER_PAGE);
+
+    @Param({"JPA", "COPY"})
+    public BatchWriterType type;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private BatchWriter batchWriter;
+    private Site site;
+    private List<Lemma> lemmas;
+    private String text;
+    private long next;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        batchWriter = type == BatchWriterType.COPY
+                ? new CopyBatchWriter(context.getBean(DataSource.class), jdbcTemplate, 1000)
+                : new JpaBatchWriter(context.getBean(PageRepository.class), context.getBean(IndexRepository.class));
+        site = new Site("https://batch-writer.example.com/" + System.nanoTime() + "/", "batch-writer");
+        site.setStatus(StatusType.INDEXING);
+        context.getBean(SiteRepository.class).save(site);
+        context.getBean(SitePartitions.class).create(site.getId());
+        LemmaDictionary.Batch lemmaFrequencies = new LemmaDictionary(site,
+                context.getBean(LemmaRepository.class), jdbcTemplate).newBatch();
+        for (int i = 0; i < LEMMAS_PER_PAGE; i++) {
+            lemmaFrequencies.count("lemma" + i);
+        }
+        lemmaFrequencies.flush();
+        lemmas = new ArrayList<>();
+        for (int i = 0; i < LEMMAS_PER_PAGE; i++) {
+            lemmas.add(lemmaFrequencies.get("lemma" + i));
+        }
+        text = Corpus.text(new Random(42), 300);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (!context.getBean(SitePartitions.class).drop(site.getId())) {
+            jdbcTemplate.update("DELETE FROM \"index\" WHERE site_id = ?", site.getId());
+            jdbcTemplate.update("DELETE FROM page WHERE site_id = ?", site.getId());
+            jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ?", site.getId());
+        }
+        jdbcTemplate.update("DELETE FROM site WHERE id = ?", site.getId());
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void savePagesAndIndices() {
+        List<Page> pages = new ArrayList<>(PAGES);
+        List<Index> indices = new ArrayList<>(PAGES * LEMMAS_PER_PAGE);
+        for (int i = 0; i < PAGES; i++) {
+            Page page = new Page(site, site.getUrl() + next++, 200, "<html><body>" + text + "</body></html>");
+            page.setText(text);
+            pages.add(page);
+        }
+        batchWriter.savePages(pages);
+        for (Page page : pages) {
+            for (int i = 0; i < LEMMAS_PER_PAGE; i++) {
+                indices.add(new Index(lemmas.get(i), page, new int[]{i * 7, i * 13}));
+            }
+        }
+        batchWriter.saveIndices(indices);
+    }
+}
@@ -0,0 +1,105 @@
+package searchengine.benchmarks;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.Application;
+import searchengine.model.*;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.SitePartitions;
+import searchengine.repository.SiteRepository;
+import searchengine.repository.batch.BatchWriter;
+import searchengine.services.parsing.LemmaDictionary;
+import searchengine.services.parsing.Lemmatisator;
+import searchengine.services.searching.InvertedIndex;
+
+import java.util.*;
+
+/**
+ * Application context for suites that need the database. It uses the datasource from
+ * {@code application.yaml} unless {@code -Dbenchmark.datasource.url} points elsewhere; the
+ * database should be a scratch one, since the synthetic corpus is written to it.
+ */
+public final class BenchmarkContext {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int PAGE_WORDS = 300;
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("config.searchCacheSize", 0);
+        String url = System.getProperty("benchmark.datasource.url");
+        if (url != null) {
+            properties.put("spring.datasource.url", url);
+        }
+        return new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * Stores {@code pages} synthetic pages for each of {@code siteCount} sites, unless an earlier
+     * run has already done so, and reloads the inverted index.
+     */
+    public static List<Site> loadCorpus(ConfigurableApplicationContext context, int siteCount, int pages) {
+        SiteRepository siteRepository = context.getBean(SiteRepository.class);
+        List<Site> sites = new ArrayList<>();
+        for (int i = 0; i < siteCount; i++) {
+            String url = "https://benchmark" + i + ".example.com/" + pages + "/";
+            Site site = siteRepository.findServingSiteByUrl(url);
+            if (site == null) {
+                site = new Site(url, "benchmark" + i);
+                site.setServing(true);
+                site.setStatus(StatusType.INDEXING);
+                siteRepository.save(site);
+                context.getBean(SitePartitions.class).create(site.getId());
+                storePages(context, site, pages, new Random(i));
+                site.setStatus(StatusType.INDEXED);
+                siteRepository.save(site);
+            }
+            sites.add(site);
+        }
+        context.getBean(InvertedIndex.class).load();
+        return sites;
+    }
+
+    private static void storePages(ConfigurableApplicationContext context, Site site, int count, Random random) {
+        Lemmatisator lemmatisator = context.getBean(Lemmatisator.class);
+        BatchWriter batchWriter = context.getBean(BatchWriter.class);
+        LemmaDictionary.Batch lemmaFrequencies = new LemmaDictionary(site,
+                context.getBean(LemmaRepository.class), context.getBean(JdbcTemplate.class)).newBatch();
+        List<Page> pages = new ArrayList<>(count);
+        List<Map<String, int[]>> pagePositions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String text = Corpus.text(random, PAGE_WORDS);
+            Page page = new Page(site, site.getUrl() + "page/" + i, 200,
+                    "<html><body><p>" + text + "</p></body></html>");
+            page.setTitle("Page " + i);
+            page.setText(text);
+            Map<String, int[]> positions = lemmatisator.collectLemmaPositions(text);
+            positions.keySet().forEach(lemmaFrequencies::count);
+            pages.add(page);
+            pagePositions.add(positions);
+        }
+        for (int from = 0; from < count; from += BATCH_SIZE) {
+            batchWriter.savePages(pages.subList(from, Math.min(from + BATCH_SIZE, count)));
+        }
+        lemmaFrequencies.flush();
+        List<Index> indices = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Page page = pages.get(i);
+            pagePositions.get(i).forEach((lemma, positions) ->
+                    indices.add(new Index(lemmaFrequencies.get(lemma), page, positions)));
+            if (indices.size() >= BATCH_SIZE * 10 || i == count - 1) {
+                batchWriter.saveIndices(indices);
+                indices.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package searchengine.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Deterministic synthetic text: Russian and English words, function words included, drawn with
+ * a skewed distribution so that a few words are frequent and most are rare, as in real pages.
+ */
+public final class Corpus {
+
+    private static final String[] RUSSIAN = {
+            "поиск", "страница", "сайт", "индекс", "запрос", "новости", "город", "работа", "время", "человек",
+            "компания", "проект", "система", "данные", "результат", "вопрос", "решение", "рынок", "цена", "товар",
+            "обучение", "курс", "программа", "разработка", "дизайн", "галерея", "картина", "выставка", "художник",
+            "остров", "путешествие", "отель", "погода", "форум", "сообщение", "пользователь", "документ", "история",
+            "правительство", "экономика", "спорт", "команда", "матч", "игрок", "чемпионат", "культура", "музыка",
+            "фильм", "книга", "автор", "читать", "писать", "искать", "находить", "работать", "новый", "большой",
+            "интересный", "последний", "главный", "быстро", "сегодня", "вчера", "очень", "лучший", "российский"
+    };
+    private static final String[] ENGLISH = {
+            "search", "engine", "page", "index", "query", "news", "city", "work", "time", "people", "company",
+            "project", "system", "data", "result", "question", "market", "price", "course", "program", "design",
+            "gallery", "painting", "exhibition", "artist", "island", "travel", "hotel", "weather", "forum", "user",
+            "document", "history", "sport", "team", "music", "film", "book", "author", "read", "write", "find"
+    };
+    private static final String[] FUNCTION_WORDS = {
+            "и", "в", "на", "с", "по", "для", "что", "как", "это", "он", "она", "они", "но", "или", "же",
+            "the", "and", "of", "to", "in", "for", "with", "on", "or", "but"
+    };
+    private static final String[] PUNCTUATION = {" ", " ", " ", " ", " ", ", ", ". ", " - ", ": ", "! "};
+
+    private Corpus() {
+    }
+
+    /**
+     * Returns a text of {@code words} words, about a fifth of them English and a third function words.
+     */
+    public static String text(Random random, int words) {
+        StringBuilder text = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            String word = word(random);
+            if (i == 0 || text.charAt(text.length() - 2) == '.') {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            }
+            text.append(word).append(PUNCTUATION[random.nextInt(PUNCTUATION.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns a query of content words only.
+     */
+    public static String query(Random random, int words) {
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            query.append(i == 0 ? "" : " ").append(RUSSIAN[skewed(random, RUSSIAN.length)]);
+        }
+        return query.toString();
+    }
+
+    public static String url(Random random, String root) {
+        StringBuilder url = new StringBuilder(root);
+        int depth = 1 + random.nextInt(4);
+        for (int i = 0; i < depth; i++) {
+            url.append(ENGLISH[random.nextInt(ENGLISH.length)]).append(i + 1 < depth ? "/" : "");
+        }
+        int kind = random.nextInt(10);
+        if (kind == 0) {
+            url.append("?page=").append(random.nextInt(100));
+        } else if (kind == 1) {
+            url.append("#").append(ENGLISH[random.nextInt(ENGLISH.length)]);
+        } else if (kind == 2) {
+            url = new StringBuilder("mailto:info@").append(root.replaceFirst("https?://", ""));
+        }
+        return url.toString();
+    }
+
+    private static String word(Random random) {
+        int kind = random.nextInt(15);
+        if (kind < 5) {
+            return FUNCTION_WORDS[random.nextInt(FUNCTION_WORDS.length)];
+        } else if (kind < 8) {
+            return ENGLISH[skewed(random, ENGLISH.length)];
+        }
+        return RUSSIAN[skewed(random, RUSSIAN.length)];
+    }
+
+    private static int skewed(Random random, int bound) {
+        double uniform = random.nextDouble();
+        return (int) (bound * uniform * uniform);
+    }
+}
@@ -0,0 +1,49 @@
+package searchengine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.config.Config;
+import searchengine.services.parsing.Lemmatisator;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lemmatization throughput in tokens per second. {@code lemmaCacheSize = 0} measures the
+ * dictionary lookups alone, the default size measures a warmed-up word form cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LemmatisatorBenchmark {
+
+    private static final int WORDS = 2000;
+
+    @Param({"0", "200000"})
+    public int lemmaCacheSize;
+
+    private Lemmatisator lemmatisator;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        Config config = new Config();
+        config.setLemmaCacheSize(lemmaCacheSize);
+        lemmatisator = new Lemmatisator(config);
+        text = Corpus.text(new Random(42), WORDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public Map<String, Integer> collectLemmasAndRanks() {
+        return lemmatisator.collectLemmasAndRanksFromText(text);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public Map<String, int[]> collectLemmaPositions() {
+        return lemmatisator.collectLemmaPositions(text);
+    }
+}
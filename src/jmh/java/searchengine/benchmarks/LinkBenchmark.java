@@ -0,0 +1,64 @@
+package searchengine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.config.InitSiteList;
+import searchengine.config.Site;
+import searchengine.services.parsing.WebParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Link filtering applied to every {@code a[href]} of a crawled page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LinkBenchmark {
+
+    private static final int LINKS = 1000;
+    private static final String[] ROOTS = {"https://lenta.ru/", "https://skillbox.ru/", "https://www.example.com/"};
+
+    private String[] links;
+
+    @Setup
+    public void setUp() {
+        List<Site> sites = new ArrayList<>();
+        for (int i = 0; i < ROOTS.length - 1; i++) {
+            Site site = new Site();
+            site.setUrl(ROOTS[i]);
+            site.setName("site" + i);
+            sites.add(site);
+        }
+        InitSiteList initSiteList = new InitSiteList();
+        initSiteList.setSites(sites);
+        WebParser.initiateValidationPatterns(initSiteList);
+
+        Random random = new Random(42);
+        links = new String[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            links[i] = Corpus.url(random, ROOTS[random.nextInt(ROOTS.length)]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINKS)
+    public void isValidLink(Blackhole blackhole) {
+        for (String link : links) {
+            blackhole.consume(WebParser.isValidLink(link));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINKS)
+    public void cleanUrl(Blackhole blackhole) {
+        for (String link : links) {
+            blackhole.consume(WebParser.cleanUrl(link));
+        }
+    }
+}
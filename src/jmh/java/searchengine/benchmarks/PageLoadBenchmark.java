@@ -0,0 +1,60 @@
+package searchengine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.dto.search.PageSummary;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repository.PageRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the pages of a search result as {@link Page} entities, HTML included, against the
+ * {@link PageSummary} projection used by search. Run with {@code -prof gc} to compare allocated
+ * bytes per load; synthetic pages carry little markup, so real sites widen the gap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class PageLoadBenchmark {
+
+    private static final int CORPUS_PAGES = 5000;
+
+    @Param({"20", "5000"})
+    public int pages;
+
+    private ConfigurableApplicationContext context;
+    private PageRepository pageRepository;
+    private long siteId;
+    private List<Long> pageIds;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        Site site = BenchmarkContext.loadCorpus(context, 1, CORPUS_PAGES).get(0);
+        siteId = site.getId();
+        pageRepository = context.getBean(PageRepository.class);
+        pageIds = context.getBean(JdbcTemplate.class).queryForList(
+                "SELECT id FROM page WHERE site_id = ? ORDER BY id LIMIT ?", Long.class, site.getId(), pages);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Page> entities() {
+        return pageRepository.findAllById(pageIds);
+    }
+
+    @Benchmark
+    public List<PageSummary> summaries() {
+        return pageRepository.findSummariesBySiteIdAndIdIn(siteId, pageIds);
+    }
+}
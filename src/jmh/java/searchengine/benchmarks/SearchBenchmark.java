@@ -0,0 +1,62 @@
+package searchengine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.dto.search.Search;
+import searchengine.model.Site;
+import searchengine.services.searching.SearchEngine;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end search over a synthetic corpus stored in the database: lemmatizing the query,
+ * ranking from the inverted index, loading the result page and building snippets. The search
+ * cache is disabled, so every call does the full work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SearchBenchmark {
+
+    private static final int SITES = 3;
+    private static final int QUERIES = 64;
+
+    @Param({"2000"})
+    public int pagesPerSite;
+
+    @Param({"false", "true"})
+    public boolean allSites;
+
+    private ConfigurableApplicationContext context;
+    private SearchEngine searchEngine;
+    private Site site;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        List<Site> sites = BenchmarkContext.loadCorpus(context, SITES, pagesPerSite);
+        searchEngine = context.getBean(SearchEngine.class);
+        site = allSites ? null : sites.get(0);
+        Random random = new Random(42);
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = Corpus.query(random, 1 + random.nextInt(3));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Search search() {
+        return searchEngine.search(queries[next++ % QUERIES], site, 0, 20);
+    }
+}
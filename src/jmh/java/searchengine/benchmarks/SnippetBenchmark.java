@@ -0,0 +1,46 @@
+package searchengine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.config.Config;
+import searchengine.services.parsing.Lemmatisator;
+import searchengine.services.searching.SnippetBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snippet building for a two-lemma query on small and large pages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SnippetBenchmark {
+
+    private static final String[] QUERY_LEMMAS = {"поиск", "страница"};
+
+    @Param({"200", "20000"})
+    public int words;
+
+    private String text;
+    private List<int[]> lemmaPositions;
+
+    @Setup
+    public void setUp() {
+        text = Corpus.text(new Random(42), words);
+        Map<String, int[]> positions = new Lemmatisator(new Config()).collectLemmaPositions(text);
+        lemmaPositions = new ArrayList<>();
+        for (String lemma : QUERY_LEMMAS) {
+            lemmaPositions.add(positions.getOrDefault(lemma, new int[0]));
+        }
+    }
+
+    @Benchmark
+    public String build() {
+        return SnippetBuilder.build(text, lemmaPositions);
+    }
+}
@@ -0,0 +1,59 @@
+package searchengine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.services.searching.ScoredPages;
+import searchengine.services.searching.TopScoredPages;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selecting the result page out of many matches: bounded heap against sorting every match.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TopScoredPagesBenchmark {
+
+    private static final int PAGES = 100_000;
+
+    @Param({"20", "1000"})
+    public int k;
+
+    private ScoredPages scoredPages;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long[] pageIds = new long[PAGES];
+        float[] scores = new float[PAGES];
+        for (int i = 0; i < PAGES; i++) {
+            pageIds[i] = i + 1;
+            scores[i] = random.nextFloat();
+        }
+        scoredPages = new ScoredPages(pageIds, scores, PAGES);
+    }
+
+    @Benchmark
+    public TopScoredPages topK() {
+        TopScoredPages topPages = new TopScoredPages(k);
+        topPages.offerAll(0, scoredPages);
+        topPages.sort();
+        return topPages;
+    }
+
+    @Benchmark
+    public Integer[] fullSort() {
+        Integer[] order = new Integer[PAGES];
+        for (int i = 0; i < PAGES; i++) {
+            order[i] = i;
+        }
+        float[] scores = scoredPages.getScores();
+        Arrays.sort(order, Comparator.comparingDouble(i -> -scores[i]));
+        return Arrays.copyOf(order, k);
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.config.Config;
+import searchengine.config.VisitedSetConfig;
+import searchengine.config.VisitedSetType;
+import searchengine.util.VisitedSet;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the crawler's visited check. Footprint per URL is reported as the secondary
+ * {@code bytesPerUrl} result, measured at the end of each iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class VisitedSetBenchmark {
+
+    private static final int PRELOADED_URLS = 1_000_000;
+
+    @Param({"EXACT", "BLOOM"})
+    public VisitedSetType type;
+
+    private VisitedSet visitedSet;
+    private long next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Config config = new Config();
+        config.setVisitedSet(type);
+        config.setVisitedSetExpectedUrls(PRELOADED_URLS * 4L);
+        visitedSet = new VisitedSetConfig().visitedSet(config);
+        for (next = 0; next < PRELOADED_URLS; next++) {
+            visitedSet.add(url(next));
+        }
+    }
+
+    @Benchmark
+    public boolean addNew(Footprint footprint) {
+        return visitedSet.add(url(next++));
+    }
+
+    @Benchmark
+    public boolean containsSeen(Footprint footprint) {
+        return visitedSet.contains(url(next++ % PRELOADED_URLS));
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double bytesPerUrl;
+
+        @TearDown(Level.Iteration)
+        public void measure(VisitedSetBenchmark benchmark) {
+            VisitedSet visitedSet = benchmark.visitedSet;
+            bytesPerUrl = (double) visitedSet.memoryBytes() / visitedSet.size();
+        }
+    }
+
+    private static String url(long n) {
+        return "https://lenta.ru/news/" + (2000 + n % 24) + "/" + n + "/";
+    }
+}
@@ -0,0 +1,25 @@
+package searchengine.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.batch.BatchWriter;
+import searchengine.repository.batch.CopyBatchWriter;
+import searchengine.repository.batch.JpaBatchWriter;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class BatchWriterConfig {
+
+    @Bean
+    public BatchWriter batchWriter(Config config, DataSource dataSource, JdbcTemplate jdbcTemplate,
+                                   PageRepository pageRepository, IndexRepository indexRepository) {
+        if (config.getBatchWriter() == BatchWriterType.COPY) {
+            return new CopyBatchWriter(dataSource, jdbcTemplate, config.getIdBlockSize());
+        }
+        return new JpaBatchWriter(pageRepository, indexRepository);
+    }
+}
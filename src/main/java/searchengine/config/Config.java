@@ -12,4 +12,33 @@ import org.springframework.context.annotation.Configuration;
 public class Config {
     private String userAgent;
     private String referrer;
-}
\ No newline at end of file
+    private int crawlWorkers = Runtime.getRuntime().availableProcessors() * 2;
+    private int persistThreads = 2;
+    private int batchSize = 100;
+    private BatchWriterType batchWriter = BatchWriterType.JPA;
+    private int idBlockSize = 1000;
+    private int connectTimeout = 10000;
+    private int requestTimeout = 30000;
+    private int maxInFlightFetches = 256;
+    private int maxConnectionsPerHost = 8;
+    private double requestsPerSecondPerHost = 10;
+    private String frontierDirectory = "frontier";
+    private boolean respectRobotsTxt = true;
+    private String robotsProductToken = "SearchEngine";
+    private long maxCrawlDelay = 10000;
+    private boolean useSitemaps = true;
+    private int maxSitemaps = 50;
+    private VisitedSetType visitedSet = VisitedSetType.EXACT;
+    private long visitedSetExpectedUrls = 1000000;
+    private double visitedSetFalsePositiveRate = 0.001;
+    private int searchCacheSize = 1000;
+    private RelevanceScorerType scorer = RelevanceScorerType.BM25;
+    private float bm25K1 = 1.2f;
+    private float bm25B = 0.75f;
+    private int lemmaCacheSize = 200000;
+    private int searchThreads = 4;
+    private int searchQueueCapacity = 100;
+    private long siteSearchTimeout = 3000;
+    private int indexPageBatchSize = 50;
+    private int indexPageJobHistory = 1000;
+}
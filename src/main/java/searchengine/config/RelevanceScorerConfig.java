@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import searchengine.services.searching.Bm25Scorer;
+import searchengine.services.searching.RankSumScorer;
+import searchengine.services.searching.RelevanceScorer;
+
+@Configuration
+public class RelevanceScorerConfig {
+
+    @Bean
+    public RelevanceScorer relevanceScorer(Config config) {
+        if (config.getScorer() == RelevanceScorerType.RANK_SUM) {
+            return new RankSumScorer();
+        }
+        return new Bm25Scorer(config.getBm25K1(), config.getBm25B());
+    }
+}
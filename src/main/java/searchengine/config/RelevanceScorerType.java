@@ -0,0 +1,6 @@
+package searchengine.config;
+
+public enum RelevanceScorerType {
+    RANK_SUM,
+    BM25
+}
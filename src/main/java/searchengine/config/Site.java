@@ -8,4 +8,6 @@ import lombok.Setter;
 public class Site {
     private String url;
     private String name;
+    private int weight = 1;
+    private Integer maxWorkers;
 }
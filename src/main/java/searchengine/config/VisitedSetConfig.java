@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import searchengine.util.BloomVisitedSet;
+import searchengine.util.FingerprintVisitedSet;
+import searchengine.util.VisitedSet;
+
+@Configuration
+public class VisitedSetConfig {
+
+    @Bean
+    public VisitedSet visitedSet(Config config) {
+        if (config.getVisitedSet() == VisitedSetType.BLOOM) {
+            return new BloomVisitedSet(config.getVisitedSetExpectedUrls(), config.getVisitedSetFalsePositiveRate());
+        }
+        return new FingerprintVisitedSet(config.getVisitedSetExpectedUrls());
+    }
+}
@@ -1,7 +1,5 @@
 package searchengine.controllers;
 
-import lombok.SneakyThrows;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -21,8 +19,10 @@ public class IndexingController {
     }
 
     @GetMapping("/startIndexing")
-    public ResponseEntity<Response> startIndexing() {
-        Response startIndexingResponse = indexingService.startIndexing();
+    public ResponseEntity<Response> startIndexing(
+            @RequestParam(name = "resume", defaultValue = "false") boolean resume,
+            @RequestParam(name = "incremental", defaultValue = "false") boolean incremental) {
+        Response startIndexingResponse = indexingService.startIndexing(resume, incremental);
         return new ResponseEntity<>(startIndexingResponse, startIndexingResponse.getHttpStatus());
     }
 
@@ -32,10 +32,30 @@ public class IndexingController {
         return new ResponseEntity<>(stopIndexingResponse, stopIndexingResponse.getHttpStatus());
     }
 
-    @SneakyThrows
     @PostMapping("/indexPage")
     public ResponseEntity<Response> indexPage(@RequestParam(name = "url") String url) {
         Response indexPageResponse = indexingService.indexPage(url);
         return new ResponseEntity<>(indexPageResponse, indexPageResponse.getHttpStatus());
     }
+
+    @GetMapping("/indexPage")
+    public ResponseEntity<Response> indexPageJobs(@RequestParam(name = "jobId", required = false) Long jobId) {
+        Response indexPageJobsResponse = indexingService.getPageIndexJobs(jobId);
+        return new ResponseEntity<>(indexPageJobsResponse, indexPageJobsResponse.getHttpStatus());
+    }
+
+    @GetMapping("/crawlSchedule")
+    public ResponseEntity<Response> crawlSchedule() {
+        Response crawlScheduleResponse = indexingService.getCrawlSchedule();
+        return new ResponseEntity<>(crawlScheduleResponse, crawlScheduleResponse.getHttpStatus());
+    }
+
+    @PostMapping("/crawlSchedule")
+    public ResponseEntity<Response> configureCrawl(
+            @RequestParam(name = "site") String site,
+            @RequestParam(name = "weight", required = false) Integer weight,
+            @RequestParam(name = "maxWorkers", required = false) Integer maxWorkers) {
+        Response configureCrawlResponse = indexingService.configureCrawl(site, weight, maxWorkers);
+        return new ResponseEntity<>(configureCrawlResponse, configureCrawlResponse.getHttpStatus());
+    }
 }
\ No newline at end of file
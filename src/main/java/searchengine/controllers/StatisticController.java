@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import searchengine.dto.responses.SearchCacheResponse;
 import searchengine.dto.responses.StatisticsResponse;
 import searchengine.services.StatisticsService;
 
@@ -25,4 +26,10 @@ public class StatisticController {
         StatisticsResponse statisticsResponse = statisticsService.getStatistics();
         return new ResponseEntity<>(statisticsResponse, HttpStatus.OK);
     }
+
+    @GetMapping("/statistics/searchCache")
+    public ResponseEntity<SearchCacheResponse> searchCacheStatistics() {
+        SearchCacheResponse searchCacheResponse = statisticsService.getSearchCacheStatistics();
+        return new ResponseEntity<>(searchCacheResponse, HttpStatus.OK);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package searchengine.dto.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class IndexEntry {
+    private Long siteId;
+    private Long lemmaId;
+    private String lemma;
+    private Long pageId;
+    private int rank;
+}
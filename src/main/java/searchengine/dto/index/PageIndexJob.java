@@ -0,0 +1,43 @@
+package searchengine.dto.index;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * A page submitted to {@code /api/indexPage}. Its status is written by the indexing thread and
+ * read by status requests.
+ */
+@Getter
+public class PageIndexJob {
+    private final long id;
+    private final String url;
+    private final Instant submitted = Instant.now();
+    private volatile PageIndexJobStatus status = PageIndexJobStatus.QUEUED;
+    private volatile String error;
+    private volatile Instant finished;
+
+    public PageIndexJob(long id, String url) {
+        this.id = id;
+        this.url = url;
+    }
+
+    public void start() {
+        status = PageIndexJobStatus.RUNNING;
+    }
+
+    public void complete() {
+        finished = Instant.now();
+        status = PageIndexJobStatus.DONE;
+    }
+
+    public void fail(String error) {
+        this.error = error;
+        finished = Instant.now();
+        status = PageIndexJobStatus.FAILED;
+    }
+
+    public boolean hasFinished() {
+        return status == PageIndexJobStatus.DONE || status == PageIndexJobStatus.FAILED;
+    }
+}
@@ -0,0 +1,5 @@
+package searchengine.dto.index;
+
+public enum PageIndexJobStatus {
+    QUEUED, RUNNING, DONE, FAILED
+}
@@ -0,0 +1,18 @@
+package searchengine.dto.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Validators of a stored page used to skip unchanged pages on re-crawl.
+ */
+@Data
+@AllArgsConstructor
+public class PageState {
+    private Long id;
+    private String path;
+    private int code;
+    private String etag;
+    private String lastModified;
+    private String contentHash;
+}
@@ -0,0 +1,43 @@
+package searchengine.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.SneakyThrows;
+import org.springframework.boot.configurationprocessor.json.JSONArray;
+import org.springframework.boot.configurationprocessor.json.JSONObject;
+import org.springframework.http.HttpStatus;
+import searchengine.dto.statistics.SiteSchedule;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Getter
+@Setter
+public class CrawlScheduleResponse implements Response {
+    private boolean result;
+    private int workers;
+    private List<SiteSchedule> sites;
+
+    @SneakyThrows
+    @Override
+    public JSONObject get() {
+        JSONArray sitesJsonArray = new JSONArray();
+        for (SiteSchedule site : sites) {
+            JSONObject siteJsonObject = new JSONObject();
+            siteJsonObject.put("url", site.getUrl());
+            siteJsonObject.put("weight", site.getWeight());
+            siteJsonObject.put("maxWorkers", site.getMaxWorkers());
+            siteJsonObject.put("running", site.getRunning());
+            siteJsonObject.put("queued", site.getQueued());
+            siteJsonObject.put("completed", site.getCompleted());
+            sitesJsonArray.put(siteJsonObject);
+        }
+        return new JSONObject().put("result", result).put("workers", workers).put("sites", sitesJsonArray);
+    }
+
+    @Override
+    public HttpStatus getHttpStatus() {
+        return HttpStatus.OK;
+    }
+}
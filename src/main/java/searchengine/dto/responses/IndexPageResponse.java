@@ -0,0 +1,26 @@
+package searchengine.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.SneakyThrows;
+import org.springframework.boot.configurationprocessor.json.JSONObject;
+import org.springframework.http.HttpStatus;
+
+@AllArgsConstructor
+@Data
+public class IndexPageResponse implements Response {
+
+    private boolean result;
+    private long jobId;
+
+    @SneakyThrows
+    @Override
+    public JSONObject get() {
+        return new JSONObject().put("result", result).put("jobId", jobId);
+    }
+
+    @Override
+    public HttpStatus getHttpStatus() {
+        return HttpStatus.OK;
+    }
+}
@@ -0,0 +1,46 @@
+package searchengine.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.SneakyThrows;
+import org.springframework.boot.configurationprocessor.json.JSONArray;
+import org.springframework.boot.configurationprocessor.json.JSONObject;
+import org.springframework.http.HttpStatus;
+import searchengine.dto.index.PageIndexJob;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Getter
+@Setter
+public class PageIndexJobsResponse implements Response {
+    private boolean result;
+    private List<PageIndexJob> jobs;
+
+    @SneakyThrows
+    @Override
+    public JSONObject get() {
+        JSONArray jobsJsonArray = new JSONArray();
+        for (PageIndexJob job : jobs) {
+            JSONObject jobJsonObject = new JSONObject();
+            jobJsonObject.put("id", job.getId());
+            jobJsonObject.put("url", job.getUrl());
+            jobJsonObject.put("status", job.getStatus().name());
+            jobJsonObject.put("submitted", job.getSubmitted().toString());
+            if (job.getFinished() != null) {
+                jobJsonObject.put("finished", job.getFinished().toString());
+            }
+            if (job.getError() != null) {
+                jobJsonObject.put("error", job.getError());
+            }
+            jobsJsonArray.put(jobJsonObject);
+        }
+        return new JSONObject().put("result", result).put("jobs", jobsJsonArray);
+    }
+
+    @Override
+    public HttpStatus getHttpStatus() {
+        return HttpStatus.OK;
+    }
+}
@@ -0,0 +1,36 @@
+package searchengine.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.SneakyThrows;
+import org.springframework.boot.configurationprocessor.json.JSONObject;
+import org.springframework.http.HttpStatus;
+import searchengine.dto.statistics.SearchCacheStatistics;
+
+@AllArgsConstructor
+@Getter
+@Setter
+public class SearchCacheResponse implements Response {
+    private boolean result;
+    private SearchCacheStatistics statistics;
+
+    @SneakyThrows
+    @Override
+    public JSONObject get() {
+        JSONObject statisticsJsonObject = new JSONObject();
+        statisticsJsonObject.put("size", statistics.getSize());
+        statisticsJsonObject.put("capacity", statistics.getCapacity());
+        statisticsJsonObject.put("hits", statistics.getHits());
+        statisticsJsonObject.put("misses", statistics.getMisses());
+        statisticsJsonObject.put("evictions", statistics.getEvictions());
+        statisticsJsonObject.put("invalidations", statistics.getInvalidations());
+        statisticsJsonObject.put("hitRate", statistics.getHitRate());
+        return new JSONObject().put("result", result).put("statistics", statisticsJsonObject);
+    }
+
+    @Override
+    public HttpStatus getHttpStatus() {
+        return HttpStatus.OK;
+    }
+}
@@ -0,0 +1,16 @@
+package searchengine.dto.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class LemmaPositions {
+    private Long pageId;
+    private String lemma;
+    /**
+     * Encoded with {@link searchengine.util.TokenPositions}, {@code null} for pages indexed
+     * before positions were stored.
+     */
+    private byte[] positions;
+}
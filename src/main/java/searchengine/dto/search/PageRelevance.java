@@ -0,0 +1,14 @@
+package searchengine.dto.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PageRelevance {
+    private Long pageId;
+    /**
+     * Sum of the ranks of the query lemmas on the page.
+     */
+    private Long relevance;
+}
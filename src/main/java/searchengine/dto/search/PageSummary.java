@@ -0,0 +1,16 @@
+package searchengine.dto.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * What a search result needs of a page, without its HTML.
+ */
+@Data
+@AllArgsConstructor
+public class PageSummary {
+    private Long id;
+    private String path;
+    private String title;
+    private String text;
+}
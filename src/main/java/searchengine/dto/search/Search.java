@@ -2,24 +2,25 @@ package searchengine.dto.search;
 
 import lombok.Data;
 
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 public class Search {
 
     private boolean result;
+    /**
+     * Number of all matching pages.
+     */
     private int count;
-    private Set<SearchResult> searchResultSet;
+    /**
+     * Results of the requested page only, best first.
+     */
+    private List<SearchResult> searchResults;
 
     public Search() {
         result = true;
         count = 0;
-        searchResultSet = new TreeSet<>();
-    }
-
-    public void setSearchResultSet(Set<SearchResult> searchResultSet) {
-        this.searchResultSet = searchResultSet;
-        setCount(searchResultSet.size());
+        searchResults = new ArrayList<>();
     }
 }
@@ -0,0 +1,20 @@
+package searchengine.dto.statistics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SearchCacheStatistics {
+    private int size;
+    private int capacity;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
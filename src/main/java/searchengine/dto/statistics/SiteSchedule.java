@@ -0,0 +1,15 @@
+package searchengine.dto.statistics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SiteSchedule {
+    private String url;
+    private int weight;
+    private int maxWorkers;
+    private int running;
+    private int queued;
+    private long completed;
+}
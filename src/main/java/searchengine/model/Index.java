@@ -5,8 +5,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.Hibernate;
-import org.hibernate.annotations.OnDelete;
-import org.hibernate.annotations.OnDeleteAction;
+import org.springframework.data.domain.Persistable;
+import searchengine.util.TokenPositions;
 
 import javax.persistence.*;
 import java.util.Objects;
@@ -17,42 +17,89 @@ import java.util.Objects;
 @Setter
 @Entity
 @Table(name = "`index`", indexes = {
-        @javax.persistence.Index(name = "idx_index_lemma_id", columnList = "lemma_id"),
-        @javax.persistence.Index(name = "idx_index_page_id", columnList = "page_id"),
-        @javax.persistence.Index(name = "idx_index_lemma_id_page_id", columnList = "lemma_id, page_id")
+        @javax.persistence.Index(name = "idx_index_page_id", columnList = "page_id")
 })
-public class Index {
+// partitioned tables take no foreign keys to page and lemma, see schema-postgresql.sql
+public class Index implements Persistable<IndexId> {
 
-    public Index(Lemma lemma, Page page, float rank) {
+    /**
+     * Ranks are stored as SMALLINT; a lemma occurring more often on one page counts this many times.
+     */
+    public static final int MAX_RANK = Short.MAX_VALUE;
+
+    public Index(Lemma lemma, Page page, int rank) {
         this.lemma = lemma;
         this.page = page;
-        this.rank = rank;
+        this.siteId = page.getSite().getId();
+        setRank(rank);
+    }
+
+    public Index(Lemma lemma, Page page, int[] positions) {
+        this(lemma, page, positions.length);
+        this.positions = TokenPositions.encode(positions);
     }
 
-    @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "index_id_seq")
-    @SequenceGenerator(name = "index_id_seq", sequenceName = "index_id_seq", allocationSize = 1)
-    private Long id;
+    /**
+     * Filled in from {@link #lemma} and {@link #page} when the row is persisted, so lemmas may
+     * still be unsaved when their index rows are built.
+     */
+    @EmbeddedId
+    private IndexId id = new IndexId();
 
+    @MapsId("lemmaId")
     @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.MERGE, optional = false)
-    @JoinColumn(name = "lemma_id", nullable = false, foreignKey = @ForeignKey(name = "FK_index_lemma"))
-    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "lemma_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Lemma lemma;
 
+    @MapsId("pageId")
     @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.MERGE, optional = false)
-    @JoinColumn(name = "page_id", nullable = false, foreignKey = @ForeignKey(name = "FK_index_page"))
-    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "page_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Page page;
 
-    @Column(name = "ranks", nullable = false)
-    private float rank;
+    /**
+     * Site of the page, the partition key. Mapped as nullable so that Hibernate can add the
+     * column to an existing table; SchemaUpgrade fills it in and makes it NOT NULL.
+     */
+    @Column(name = "site_id")
+    private Long siteId;
+
+    @Column(name = "ranks", nullable = false, columnDefinition = "SMALLINT")
+    private int rank;
+
+    /**
+     * Character offsets of the lemma in the page text, encoded with {@link searchengine.util.TokenPositions}.
+     */
+    @Column(name = "positions", columnDefinition = "BYTEA")
+    private byte[] positions;
+
+    /**
+     * The key is assigned, not generated, so Spring Data cannot tell new rows by it; without this
+     * every {@code save} of a new row would select it first.
+     */
+    @Transient
+    private boolean stored;
+
+    public void setRank(int rank) {
+        this.rank = Math.min(rank, MAX_RANK);
+    }
+
+    @Override
+    public boolean isNew() {
+        return !stored;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) return false;
         Index index = (Index) o;
-        return id != 0 && Objects.equals(id, index.id);
+        return id.getLemmaId() != null && id.getPageId() != null && Objects.equals(id, index.id);
     }
 
     @Override
@@ -63,7 +110,8 @@ public class Index {
     @Override
     public String toString() {
         return getClass().getSimpleName() + "(" +
-                "id = " + id + ", " +
+                "lemmaId = " + id.getLemmaId() + ", " +
+                "pageId = " + id.getPageId() + ", " +
                 "rank = " + rank + ")";
     }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package searchengine.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+
+/**
+ * Key of an {@link Index} row: a lemma occurs on a page at most once.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@EqualsAndHashCode
+@Embeddable
+public class IndexId implements Serializable {
+
+    @Column(name = "lemma_id")
+    private Long lemmaId;
+
+    @Column(name = "page_id")
+    private Long pageId;
+}
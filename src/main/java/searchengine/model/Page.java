@@ -15,7 +15,7 @@ import java.util.Set;
 @Setter
 @Entity
 @Table(name = "page", indexes = {
-        @Index(name = "idx_page_path_unq", columnList = "path", unique = true),
+        @Index(name = "idx_page_site_id_path_unq", columnList = "site_id, path", unique = true),
         @Index(name = "idx_page_site_id", columnList = "site_id")
 })
 public class Page {
@@ -46,6 +46,22 @@ public class Page {
     @Column(name = "content", nullable = false, columnDefinition = "TEXT")
     private String content;
 
+    @Column(name = "title", columnDefinition = "TEXT")
+    private String title;
+
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "plain_text", columnDefinition = "BYTEA")
+    private String text;
+
+    @Column(name = "etag", columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    @Column(name = "last_modified", columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
+
     @OneToMany(mappedBy = "page", fetch = FetchType.LAZY)
     private Set<searchengine.model.Index> indices = new HashSet<>();
 
@@ -42,6 +42,13 @@ public class Site {
     @Column(name = "name", nullable = false, columnDefinition = "VARCHAR(50)")
     private String name;
 
+    /**
+     * Whether search and single page indexing use this row. A full re-index writes into a new
+     * row of the same URL, which replaces the serving one once it is complete.
+     */
+    @Column(name = "serving", nullable = false, columnDefinition = "BOOLEAN NOT NULL DEFAULT TRUE")
+    private boolean serving;
+
     @OneToMany(mappedBy = "site", fetch = FetchType.LAZY)
     private Set<Page> pages = new HashSet<>();
 
@@ -1,18 +1,79 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.index.IndexEntry;
+import searchengine.dto.search.LemmaPositions;
+import searchengine.dto.search.PageRelevance;
 import searchengine.model.Index;
+import searchengine.model.IndexId;
 import searchengine.model.Lemma;
 import searchengine.model.Page;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
-@Repository
-public interface IndexRepository extends JpaRepository<Index, Long> {
-    Index findByLemmaAndPage(Lemma lemma, Page page);
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
+@Repository
+public interface IndexRepository extends JpaRepository<Index, IndexId> {
     List<Index> findAllByLemma(Lemma lemma);
 
     Long countDistinctByLemmaId(Long lemmaId);
-}
\ No newline at end of file
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Index i WHERE i.siteId = :siteId AND i.page = :page")
+    void deleteAllByPage(@Param("siteId") long siteId, @Param("page") Page page);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Index i WHERE i.siteId = :siteId")
+    void deleteAllBySiteId(@Param("siteId") long siteId);
+
+    @Query("SELECT i FROM Index i JOIN FETCH i.lemma l " +
+            "WHERE i.siteId = :siteId AND l.site.id = :siteId AND i.page.id = :pageId")
+    List<Index> findAllByPageIdWithLemmas(@Param("siteId") long siteId, @Param("pageId") Long pageId);
+
+    /**
+     * Lemmas the page is indexed with. Unlike {@link #findAllByPageIdWithLemmas} it leaves no index
+     * rows in the persistence context, so rows with the same keys can be saved in the same transaction.
+     */
+    @Query("SELECT l FROM Index i JOIN i.lemma l " +
+            "WHERE i.siteId = :siteId AND l.site.id = :siteId AND i.page.id = :pageId")
+    List<Lemma> findLemmasByPageId(@Param("siteId") long siteId, @Param("pageId") Long pageId);
+
+    @Query("SELECT new searchengine.dto.search.LemmaPositions(i.page.id, l.lemmaString, i.positions) " +
+            "FROM Index i JOIN i.lemma l " +
+            "WHERE i.siteId = :siteId AND l.site.id = :siteId " +
+            "AND i.page.id IN :pageIds AND l.lemmaString IN :lemmas")
+    List<LemmaPositions> findPositions(@Param("siteId") long siteId,
+                                       @Param("pageIds") Collection<Long> pageIds,
+                                       @Param("lemmas") Collection<String> lemmas);
+
+    /**
+     * Sums ranks of the lemmas per page, keeping only pages that contain all of them.
+     */
+    @Query("SELECT new searchengine.dto.search.PageRelevance(i.page.id, SUM(i.rank)) " +
+            "FROM Index i " +
+            "WHERE i.siteId = :siteId AND i.lemma IN :lemmas " +
+            "GROUP BY i.page.id " +
+            "HAVING COUNT(i.lemma) = :lemmaCount")
+    List<PageRelevance> findRelevanceByLemmas(@Param("siteId") long siteId,
+                                              @Param("lemmas") Collection<Lemma> lemmas,
+                                              @Param("lemmaCount") long lemmaCount);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "10000"))
+    @Query("SELECT new searchengine.dto.index.IndexEntry(l.site.id, l.id, l.lemmaString, i.page.id, i.rank) " +
+            "FROM Index i JOIN i.lemma l " +
+            "WHERE i.siteId = :siteId AND l.site.id = :siteId " +
+            "ORDER BY l.id, i.page.id")
+    Stream<IndexEntry> streamAllEntriesBySiteId(@Param("siteId") long siteId);
+}
@@ -2,9 +2,11 @@ package searchengine.repository;
 
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Lemma;
 import searchengine.model.Site;
 
@@ -25,4 +27,9 @@ public interface LemmaRepository extends JpaRepository<Lemma, Long> {
     List<Lemma> findAllBySite(Site site);
 
     Long countBySite(Site site);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Lemma l WHERE l.site.id = :siteId")
+    void deleteAllBySiteId(@Param("siteId") long siteId);
 }
\ No newline at end of file
@@ -1,13 +1,17 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import searchengine.model.Lemma;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.index.PageState;
+import searchengine.dto.search.PageSummary;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,19 +19,28 @@ public interface PageRepository extends JpaRepository<Page, Long> {
 
     List<Page> findAllBySite(Site site);
 
-    @Query("SELECT p FROM Page p " +
-            "WHERE EXISTS " +
-            "(SELECT 1 FROM Index i " +
-            "JOIN i.lemma l " +
-            "WHERE i.page = p " +
-            "AND l IN :lemmas " +
-            "GROUP BY i.page " +
-            "HAVING COUNT(l) = :lemmaCount)")
-    List<Page> findAllByLemmas(@Param("lemmas") List<Lemma> lemmas, @Param("lemmaCount") long lemmaCount);
+    Page findBySiteAndPath(Site site, String path);
 
-    Page findByPath(String path);
+    @Query("SELECT p.path FROM Page p WHERE p.site = :site")
+    List<String> findAllPathsBySite(@Param("site") Site site);
+
+    @Query("SELECT new searchengine.dto.index.PageState(p.id, p.path, p.code, p.etag, p.lastModified, p.contentHash) " +
+            "FROM Page p WHERE p.site = :site")
+    List<PageState> findAllStatesBySite(@Param("site") Site site);
+
+    @Query("SELECT new searchengine.dto.search.PageSummary(p.id, p.path, p.title, p.text) " +
+            "FROM Page p WHERE p.site.id = :siteId AND p.id IN :ids")
+    List<PageSummary> findSummariesBySiteIdAndIdIn(@Param("siteId") long siteId, @Param("ids") Collection<Long> ids);
+
+    @Query("SELECT p.content FROM Page p WHERE p.site.id = :siteId AND p.id = :id")
+    String findContentBySiteIdAndId(@Param("siteId") long siteId, @Param("id") Long id);
 
     Long countBySiteAndCode(Site site, int code);
 
     Long countBySite(Site site);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Page p WHERE p.site.id = :siteId")
+    void deleteAllBySiteId(@Param("siteId") long siteId);
 }
\ No newline at end of file
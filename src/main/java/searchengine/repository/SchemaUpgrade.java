@@ -0,0 +1,174 @@
+package searchengine.repository;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.Index;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Schema changes that {@code ddl-auto: update} cannot make by itself. Runs after Hibernate has
+ * updated the schema; every statement is idempotent.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class SchemaUpgrade {
+    public static final Logger logger = LogManager.getLogger(SchemaUpgrade.class);
+    private static final String[] PARTITIONED_TABLES = {"page", "lemma", "index"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SitePartitions sitePartitions;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public SchemaUpgrade(JdbcTemplate jdbcTemplate, SitePartitions sitePartitions,
+                         PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sitePartitions = sitePartitions;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void upgrade() {
+        // page paths are unique per site generation, superseded by idx_page_site_id_path_unq
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_page_path_unq");
+        fillIndexSiteIds();
+        dropIndexSurrogateKey();
+        partitionTables();
+        jdbcTemplate.queryForList("SELECT id FROM site", Long.class).forEach(sitePartitions::create);
+        logger.info("Database schema is up to date"
+                + (sitePartitions.isPartitioned() ? ", partitioned by site" : ""));
+    }
+
+    /**
+     * Index rows written before they carried their site get it from their page, once.
+     */
+    private void fillIndexSiteIds() {
+        List<Boolean> nullable = jdbcTemplate.queryForList("SELECT is_nullable = 'YES' " +
+                "FROM information_schema.columns " +
+                "WHERE table_schema = current_schema() AND table_name = 'index' AND column_name = 'site_id'",
+                Boolean.class);
+        if (nullable.contains(Boolean.TRUE)) {
+            int rows = jdbcTemplate.update("UPDATE \"index\" i SET site_id = p.site_id FROM page p " +
+                    "WHERE i.page_id = p.id AND i.site_id IS NULL");
+            jdbcTemplate.execute("ALTER TABLE \"index\" ALTER COLUMN site_id SET NOT NULL");
+            logger.info("Site ids filled in for " + rows + " index rows");
+        }
+    }
+
+    /**
+     * Index rows keyed by a sequence id are rekeyed by lemma and page, with ranks narrowed to
+     * SMALLINT. Rewrites the whole table once, in one transaction.
+     */
+    private void dropIndexSurrogateKey() {
+        List<String> idColumn = jdbcTemplate.queryForList("SELECT column_name " +
+                "FROM information_schema.columns " +
+                "WHERE table_schema = current_schema() AND table_name = 'index' AND column_name = 'id'",
+                String.class);
+        if (idColumn.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        String primaryKey = sitePartitions.isPartitioned() ? "lemma_id, page_id, site_id" : "lemma_id, page_id";
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("ALTER TABLE \"index\" DROP CONSTRAINT IF EXISTS index_pkey");
+            jdbcTemplate.execute("ALTER TABLE \"index\" DROP COLUMN id");
+            jdbcTemplate.execute("ALTER TABLE \"index\" ALTER COLUMN ranks TYPE SMALLINT " +
+                    "USING LEAST(ROUND(ranks), " + Index.MAX_RANK + ")");
+            jdbcTemplate.execute("ALTER TABLE \"index\" ADD PRIMARY KEY (" + primaryKey + ")");
+            // both are prefixes of the primary key now
+            jdbcTemplate.execute("DROP INDEX IF EXISTS idx_index_lemma_id, idx_index_lemma_id_page_id");
+            jdbcTemplate.execute("DROP SEQUENCE IF EXISTS index_id_seq");
+        });
+        logger.info("Index rows rekeyed by lemma and page in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Tables Hibernate created before {@code schema-postgresql.sql} ran are not partitioned. They
+     * are renamed, the partitioned tables are created in their place and every site's rows are
+     * copied into its own partitions. Indexes and constraints Hibernate added are moved over, apart
+     * from primary keys and unique keys without {@code site_id}, which a partitioned table cannot
+     * have. Rewrites all three tables once, in one transaction.
+     */
+    private void partitionTables() {
+        if (sitePartitions.isPartitioned()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            List<String> definitions = new ArrayList<>();
+            for (String table : PARTITIONED_TABLES) {
+                String old = table + "_unpartitioned";
+                jdbcTemplate.execute("ALTER TABLE \"" + table + "\" RENAME TO " + old);
+                definitions.addAll(indexDefinitions(table, old));
+                definitions.addAll(constraintDefinitions(table, old));
+            }
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                new ResourceDatabasePopulator(new ClassPathResource("schema-postgresql.sql")).populate(connection);
+                return null;
+            });
+            sitePartitions.refresh();
+            jdbcTemplate.queryForList("SELECT id FROM site", Long.class).forEach(sitePartitions::create);
+            for (String table : PARTITIONED_TABLES) {
+                String columns = String.join(", ", jdbcTemplate.queryForList("SELECT column_name " +
+                        "FROM information_schema.columns " +
+                        "WHERE table_schema = current_schema() AND table_name = ?", String.class, table));
+                // rows of deleted sites have no partition to go to
+                int rows = jdbcTemplate.update("INSERT INTO \"" + table + "\" (" + columns + ") " +
+                        "SELECT " + columns + " FROM " + table + "_unpartitioned " +
+                        "WHERE site_id IN (SELECT id FROM site)");
+                jdbcTemplate.execute("DROP TABLE " + table + "_unpartitioned CASCADE");
+                logger.info(rows + " rows of " + table + " moved to site partitions");
+            }
+            definitions.forEach(jdbcTemplate::execute);
+        });
+        logger.info("Tables partitioned by site in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Indexes of the renamed table that no constraint owns, as statements for the new table.
+     */
+    private List<String> indexDefinitions(String table, String old) {
+        List<String> definitions = new ArrayList<>();
+        for (String definition : jdbcTemplate.queryForList("SELECT pg_get_indexdef(i.indexrelid) " +
+                "FROM pg_index i " +
+                "WHERE i.indrelid = ?::regclass " +
+                "AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = i.indexrelid)",
+                String.class, old)) {
+            if (!definition.startsWith("CREATE UNIQUE") || definition.contains("site_id")) {
+                definitions.add(definition.replace(old, "\"" + table + "\""));
+            }
+        }
+        return definitions;
+    }
+
+    /**
+     * Unique and foreign key constraints of the renamed table, as statements for the new table.
+     * Foreign keys between the renamed tables are left out, partitioned tables take none.
+     */
+    private List<String> constraintDefinitions(String table, String old) {
+        List<String> definitions = new ArrayList<>();
+        jdbcTemplate.query("SELECT conname, contype, pg_get_constraintdef(oid) FROM pg_constraint " +
+                "WHERE conrelid = ?::regclass AND contype IN ('u', 'f')", resultSet -> {
+            String definition = resultSet.getString(3);
+            boolean kept = "u".equals(resultSet.getString(2)) ? definition.contains("site_id")
+                    : !definition.contains("_unpartitioned");
+            if (kept) {
+                definitions.add("ALTER TABLE \"" + table + "\" ADD CONSTRAINT \"" + resultSet.getString(1)
+                        + "\" " + definition);
+            }
+        }, old);
+        return definitions;
+    }
+}
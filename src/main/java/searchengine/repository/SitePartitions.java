@@ -0,0 +1,88 @@
+package searchengine.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-site partitions of {@code page}, {@code lemma} and {@code index}, named {@code page_s<siteId>}
+ * and so on. Every site row gets its own partitions, so a site generation is dropped in constant
+ * time. Tables that Hibernate created before {@code schema-postgresql.sql} ran are converted by
+ * {@link SchemaUpgrade} at startup; where the tables are not partitioned, every method does nothing.
+ */
+@Component
+public class SitePartitions {
+
+    private static final String[] TABLES = {"page", "lemma", "index"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean partitioned;
+
+    @Autowired
+    public SitePartitions(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean isPartitioned() {
+        if (partitioned == null) {
+            partitioned = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt " +
+                    "JOIN pg_class c ON c.oid = pt.partrelid " +
+                    "WHERE c.relname = 'page' AND c.relnamespace = current_schema()::regnamespace)", Boolean.class);
+        }
+        return partitioned;
+    }
+
+    /**
+     * Checks again whether the tables are partitioned, after {@link SchemaUpgrade} converted them.
+     */
+    void refresh() {
+        partitioned = null;
+    }
+
+    /**
+     * Creates the partitions of a site unless they exist. Must run before rows of the site are written.
+     */
+    public void create(long siteId) {
+        if (!isPartitioned()) {
+            return;
+        }
+        for (String table : TABLES) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition(table, siteId) +
+                    " PARTITION OF \"" + table + "\" FOR VALUES IN (" + siteId + ")");
+        }
+    }
+
+    /**
+     * Drops all rows of a site with its partitions.
+     *
+     * @return {@code false} if the tables are not partitioned and nothing was dropped
+     */
+    public boolean drop(long siteId) {
+        if (!isPartitioned()) {
+            return false;
+        }
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition("index", siteId) + ", " +
+                partition("page", siteId) + ", " + partition("lemma", siteId));
+        return true;
+    }
+
+    /**
+     * Rewrites the index rows of a site in primary key order, so the postings of a lemma sit on
+     * adjacent pages. Locks the partition while it runs; meant for a generation not yet serving.
+     *
+     * @return {@code false} if the tables are not partitioned and nothing was clustered
+     */
+    public boolean cluster(long siteId) {
+        if (!isPartitioned()) {
+            return false;
+        }
+        String partition = partition("index", siteId);
+        jdbcTemplate.execute("CLUSTER " + partition + " USING " + partition + "_pkey");
+        jdbcTemplate.execute("ANALYZE " + partition);
+        return true;
+    }
+
+    private static String partition(String table, long siteId) {
+        return table + "_s" + siteId;
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import searchengine.model.Site;
 import searchengine.model.StatusType;
@@ -13,7 +14,28 @@ import java.util.List;
 
 @Repository
 public interface SiteRepository extends JpaRepository<Site, Long> {
-    Site findSiteByUrl(String url);
+    @Query("SELECT s FROM Site s WHERE s.url = :url AND s.serving = true")
+    Site findServingSiteByUrl(@Param("url") String url);
+
+    List<Site> findAllByServingTrue();
+
+    List<Site> findAllByUrlAndServingFalse(String url);
+
+    Site findFirstByUrlOrderByIdDesc(String url);
+
+    /**
+     * Newest row of every site URL: the generation being built, if any, otherwise the serving one.
+     */
+    @Query("SELECT s FROM Site s WHERE s.id IN (SELECT MAX(g.id) FROM Site g GROUP BY g.url) ORDER BY s.id")
+    List<Site> findLatestGenerations();
+
+    /**
+     * Makes the given row the only serving one of its URL in a single statement.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE site SET serving = (id = :id) WHERE url = :url", nativeQuery = true)
+    void serveGeneration(@Param("url") String url, @Param("id") long id);
 
     List<Site> findAllByStatus(StatusType statusType);
 
@@ -0,0 +1,28 @@
+package searchengine.repository.batch;
+
+import searchengine.model.Index;
+import searchengine.model.Page;
+
+import java.util.List;
+
+/**
+ * Bulk persistence of crawl results. Implementations assign ids to new entities,
+ * so callers may reference them right after a save.
+ */
+public interface BatchWriter {
+    void savePages(List<Page> pages);
+
+    void saveIndices(List<Index> indices);
+
+    /**
+     * Overwrites content, code and validators of pages that are already stored.
+     */
+    void updatePages(List<Page> pages);
+
+    /**
+     * Overwrites ranks of stored index rows.
+     */
+    void updateIndices(List<Index> indices);
+
+    void deleteIndices(List<Index> indices);
+}
@@ -0,0 +1,159 @@
+package searchengine.repository.batch;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import searchengine.exceptions.IndexingException;
+import searchengine.model.CompressedTextConverter;
+import searchengine.model.Index;
+import searchengine.model.Page;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Writes new rows with PostgreSQL {@code COPY FROM STDIN} in CSV format.
+ * Page ids come from a pooled sequence range, index rows are keyed by them, so a batch costs one
+ * round trip per table plus an occasional id block refill. Lemmas are not written here: the crawl
+ * upserts them through {@code LemmaDictionary} in the same transaction.
+ */
+public class CopyBatchWriter implements BatchWriter {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final CompressedTextConverter TEXT_CONVERTER = new CompressedTextConverter();
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final IdRangeAllocator pageIds;
+
+    public CopyBatchWriter(DataSource dataSource, JdbcTemplate jdbcTemplate, int idBlockSize) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.pageIds = new IdRangeAllocator(jdbcTemplate, "page_id_seq", idBlockSize);
+    }
+
+    @Override
+    public void savePages(List<Page> pages) {
+        pages.forEach(page -> page.setId(pageIds.next()));
+        copy("COPY page (id, site_id, path, code, content, title, plain_text, etag, last_modified, " +
+                        "content_hash) FROM STDIN WITH (FORMAT csv)", pages,
+                page -> new Object[]{page.getId(), page.getSite().getId(), page.getPath(),
+                        page.getCode(), page.getContent(), page.getTitle(),
+                        toByteaLiteral(TEXT_CONVERTER.convertToDatabaseColumn(page.getText())),
+                        page.getEtag(), page.getLastModified(), page.getContentHash()});
+    }
+
+    @Override
+    public void saveIndices(List<Index> indices) {
+        copy("COPY \"index\" (site_id, lemma_id, page_id, ranks, positions) FROM STDIN WITH (FORMAT csv)",
+                indices, index -> new Object[]{index.getSiteId(), index.getLemma().getId(),
+                        index.getPage().getId(), index.getRank(), toByteaLiteral(index.getPositions())});
+    }
+
+    @Override
+    public void updatePages(List<Page> pages) {
+        if (pages.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        pages.forEach(page -> rows.add(new Object[]{page.getCode(), page.getContent(), page.getTitle(),
+                TEXT_CONVERTER.convertToDatabaseColumn(page.getText()), page.getEtag(),
+                page.getLastModified(), page.getContentHash(), page.getSite().getId(), page.getId()}));
+        jdbcTemplate.batchUpdate("UPDATE page SET code = ?, content = ?, title = ?, plain_text = ?, etag = ?, " +
+                "last_modified = ?, content_hash = ? WHERE site_id = ? AND id = ?", rows);
+    }
+
+    @Override
+    public void updateIndices(List<Index> indices) {
+        if (indices.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        indices.forEach(index -> rows.add(new Object[]{index.getRank(), index.getPositions(), index.getSiteId(),
+                index.getLemma().getId(), index.getPage().getId()}));
+        jdbcTemplate.batchUpdate("UPDATE \"index\" SET ranks = ?, positions = ? " +
+                "WHERE site_id = ? AND lemma_id = ? AND page_id = ?", rows);
+    }
+
+    @Override
+    public void deleteIndices(List<Index> indices) {
+        if (indices.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        indices.forEach(index -> rows.add(new Object[]{index.getSiteId(), index.getLemma().getId(),
+                index.getPage().getId()}));
+        jdbcTemplate.batchUpdate("DELETE FROM \"index\" WHERE site_id = ? AND lemma_id = ? AND page_id = ?", rows);
+    }
+
+    private <T> void copy(String sql, Collection<T> rows, Function<T, Object[]> columns) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            try {
+                StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE);
+                for (T row : rows) {
+                    appendCsvRow(buffer, columns.apply(row));
+                    if (buffer.length() >= COPY_BUFFER_SIZE) {
+                        write(copyIn, buffer);
+                    }
+                }
+                write(copyIn, buffer);
+                copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        } catch (SQLException e) {
+            throw new IndexingException("Error occurred while copying rows: " + sql, e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * Bytes in the hex format of {@code bytea} input.
+     */
+    private static String toByteaLiteral(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        StringBuilder hex = new StringBuilder(2 + bytes.length * 2).append("\\x");
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void write(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private static void appendCsvRow(StringBuilder buffer, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            Object value = values[i];
+            if (value instanceof String) {
+                buffer.append('"').append(((String) value).replace("\"", "\"\"")).append('"');
+            } else if (value != null) {
+                buffer.append(value);
+            }
+        }
+        buffer.append('\n');
+    }
+}
@@ -0,0 +1,41 @@
+package searchengine.repository.batch;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Hands out ids of a database sequence from locally pooled blocks, fetching a whole block
+ * in a single round trip instead of calling {@code nextval} once per row.
+ */
+public class IdRangeAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String sequenceName;
+    private final int blockSize;
+    private long[] pool = new long[0];
+    private int position;
+
+    public IdRangeAllocator(JdbcTemplate jdbcTemplate, String sequenceName, int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenceName = sequenceName;
+        this.blockSize = blockSize;
+    }
+
+    public synchronized long next() {
+        if (position == pool.length) {
+            refill(blockSize);
+        }
+        return pool[position++];
+    }
+
+    private void refill(int count) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT nextval('" + sequenceName + "') FROM generate_series(1, ?)", Long.class, count);
+        pool = new long[ids.size()];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = ids.get(i);
+        }
+        position = 0;
+    }
+}
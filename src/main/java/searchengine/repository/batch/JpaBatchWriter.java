@@ -0,0 +1,46 @@
+package searchengine.repository.batch;
+
+import searchengine.model.Index;
+import searchengine.model.Page;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.PageRepository;
+
+import java.util.List;
+
+public class JpaBatchWriter implements BatchWriter {
+
+    private final PageRepository pageRepository;
+    private final IndexRepository indexRepository;
+
+    public JpaBatchWriter(PageRepository pageRepository, IndexRepository indexRepository) {
+        this.pageRepository = pageRepository;
+        this.indexRepository = indexRepository;
+    }
+
+    @Override
+    public void savePages(List<Page> pages) {
+        pageRepository.saveAll(pages);
+    }
+
+    @Override
+    public void saveIndices(List<Index> indices) {
+        indexRepository.saveAll(indices);
+    }
+
+    @Override
+    public void updatePages(List<Page> pages) {
+        pageRepository.saveAll(pages);
+    }
+
+    @Override
+    public void updateIndices(List<Index> indices) {
+        indexRepository.saveAll(indices);
+    }
+
+    @Override
+    public void deleteIndices(List<Index> indices) {
+        if (!indices.isEmpty()) {
+            indexRepository.deleteAllInBatch(indices);
+        }
+    }
+}
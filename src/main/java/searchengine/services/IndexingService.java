@@ -1,24 +1,40 @@
 package searchengine.services;
 
-import lombok.SneakyThrows;
-
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import org.springframework.transaction.annotation.Transactional;
 import searchengine.config.Config;
 import searchengine.config.InitSiteList;
+import searchengine.dto.responses.CrawlScheduleResponse;
 import searchengine.dto.responses.ErrorResponse;
+import searchengine.dto.responses.IndexPageResponse;
+import searchengine.dto.responses.PageIndexJobsResponse;
+import searchengine.dto.index.PageIndexJob;
+import searchengine.services.parsing.CrawlFrontier;
+import searchengine.services.parsing.CrawlMetrics;
+import searchengine.services.parsing.CrawlScheduler;
+import searchengine.services.parsing.LemmaDictionary;
+import searchengine.services.parsing.LemmatizedPage;
 import searchengine.services.parsing.Lemmatisator;
+import searchengine.services.parsing.PageFetcher;
+import searchengine.services.parsing.SiteDiscovery;
 import searchengine.model.*;
 import searchengine.repository.*;
+import searchengine.repository.batch.BatchWriter;
 import searchengine.services.parsing.WebParser;
+import searchengine.services.searching.InvertedIndex;
+import searchengine.services.searching.SearchCache;
+import searchengine.util.VisitedSet;
 import searchengine.dto.responses.IndexResponse;
 import searchengine.dto.responses.Response;
 
+import java.nio.file.Paths;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.*;
@@ -38,11 +54,28 @@ public class IndexingService {
     private final Config config;
     private static AtomicBoolean indexing = new AtomicBoolean(false);
     private final Lemmatisator lemmatisator;
+    private final InvertedIndex invertedIndex;
+    private final BatchWriter batchWriter;
+    private final JdbcTemplate jdbcTemplate;
+    private final PageFetcher pageFetcher;
+    private final VisitedSet visitedSet;
+    private final SearchCache searchCache;
+    private final CrawlMetrics crawlMetrics;
+    private final CrawlScheduler crawlScheduler;
+    private final SiteDiscovery siteDiscovery;
+    private final SitePartitions sitePartitions;
+    private final PageIndexQueue pageIndexQueue;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
     public IndexingService(SiteRepository siteRepository, PageRepository pageRepository,
                            LemmaRepository lemmaRepository, IndexRepository indexRepository,
-                           InitSiteList initSiteList, Config config, Lemmatisator lemmatisator) {
+                           InitSiteList initSiteList, Config config, Lemmatisator lemmatisator,
+                           InvertedIndex invertedIndex, BatchWriter batchWriter, JdbcTemplate jdbcTemplate,
+                           PageFetcher pageFetcher, VisitedSet visitedSet, SearchCache searchCache,
+                           CrawlMetrics crawlMetrics, CrawlScheduler crawlScheduler,
+                           SiteDiscovery siteDiscovery, SitePartitions sitePartitions,
+                           PlatformTransactionManager transactionManager) {
         this.siteRepository = siteRepository;
         this.pageRepository = pageRepository;
         this.lemmaRepository = lemmaRepository;
@@ -50,52 +83,117 @@ public class IndexingService {
         this.initSiteList = initSiteList;
         this.config = config;
         this.lemmatisator = lemmatisator;
+        this.invertedIndex = invertedIndex;
+        this.batchWriter = batchWriter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.pageFetcher = pageFetcher;
+        this.visitedSet = visitedSet;
+        this.searchCache = searchCache;
+        this.crawlMetrics = crawlMetrics;
+        this.crawlScheduler = crawlScheduler;
+        this.siteDiscovery = siteDiscovery;
+        this.sitePartitions = sitePartitions;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pageIndexQueue = new PageIndexQueue(config.getIndexPageBatchSize(), config.getIndexPageJobHistory(),
+                this::indexPages);
         WebParser.initiateValidationPatterns(initSiteList);
     }
 
-    @Transactional
-    protected void clearData() {
-        indexRepository.deleteAllInBatch();
-        lemmaRepository.deleteAllInBatch();
-        pageRepository.deleteAllInBatch();
-        siteRepository.deleteAllInBatch();
-        WebParser.clearVisitedLinks();
+    /**
+     * Deletes a generation of a site that no longer serves by dropping its partitions, or with
+     * one set-based delete per table where the tables are not partitioned.
+     */
+    private void dropGeneration(Site generation) {
+        long siteId = generation.getId();
+        invertedIndex.removeSite(siteId);
+        searchCache.invalidate(siteId);
+        new CrawlFrontier(Paths.get(config.getFrontierDirectory()), siteId).delete();
+        long start = System.currentTimeMillis();
+        if (!sitePartitions.drop(siteId)) {
+            indexRepository.deleteAllBySiteId(siteId);
+            pageRepository.deleteAllBySiteId(siteId);
+            lemmaRepository.deleteAllBySiteId(siteId);
+        }
+        siteRepository.deleteById(siteId);
+        logger.info(MessageFormat.format("{0}: generation {1} dropped in {2} ms", generation.getName(),
+                String.valueOf(siteId), System.currentTimeMillis() - start));
     }
 
-    public Response startIndexing() {
+    /**
+     * Swaps a completed generation in for the serving one of its site and drops the old one.
+     * Its index rows are clustered by lemma first, while nothing reads them yet.
+     */
+    private void serveGeneration(Site generation) {
+        long start = System.currentTimeMillis();
+        if (sitePartitions.cluster(generation.getId())) {
+            logger.info(MessageFormat.format("{0}: generation {1} clustered in {2} ms", generation.getName(),
+                    String.valueOf(generation.getId()), System.currentTimeMillis() - start));
+        }
+        Site previous = siteRepository.findServingSiteByUrl(generation.getUrl());
+        siteRepository.serveGeneration(generation.getUrl(), generation.getId());
+        generation.setServing(true);
+        logger.info(generation.getName() + ": generation " + generation.getId() + " is serving");
+        if (previous != null && !previous.getId().equals(generation.getId())) {
+            dropGeneration(previous);
+        }
+    }
+
+    /**
+     * Without {@code resume} or {@code incremental}, every site that already has an index is
+     * re-indexed into a new generation while search keeps serving the current one; the new
+     * generation replaces it only when its crawl completes.
+     *
+     * @param resume      continue the previous crawl from its frontier instead of starting from scratch
+     * @param incremental keep the stored index and re-crawl it, rewriting only pages that changed
+     */
+    public Response startIndexing(boolean resume, boolean incremental) {
         if (indexing.compareAndSet(false, true)) {
-            clearData();
+            visitedSet.clear();
+            if (!resume && !incremental) {
+                CrawlFrontier.deleteAll(Paths.get(config.getFrontierDirectory()));
+            }
             WebParser.startCrawling();
-            new Thread(this::indexing).start();
+            new Thread(() -> indexing(resume, incremental)).start();
             return new IndexResponse(true);
         } else return new ErrorResponse(false, "Индексация уже запущена");
     }
 
-    public void indexing() {
-        List<WebParser> webParserList = createWebParsers(initSiteList.getSites());
-        webParserList.forEach(webParser -> new Thread(() -> indexingThreadProcess(webParser)).start());
+    public void indexing(boolean resume, boolean incremental) {
+        List<WebParser> webParserList = createWebParsers(initSiteList.getSites(), resume, incremental);
+        webParserList.forEach(webParser -> {
+            webParser.setResume(resume);
+            webParser.setIncremental(incremental);
+        });
+        webParserList.forEach(webParser -> new Thread(() -> indexingThreadProcess(webParser, resume)).start());
     }
 
-    private void indexingThreadProcess(WebParser webParser) {
+    private void indexingThreadProcess(WebParser webParser, boolean resume) {
         Site site = webParser.getSite();
         try {
+            if (resume && site.getId() != null && !site.isServing()) {
+                invertedIndex.loadGeneration(site);
+            }
             saveSiteStatus(site, StatusType.INDEXING);
-            ForkJoinPool forkJoinPool = new ForkJoinPool();
-            forkJoinPool.execute(webParser);
-            int count = webParser.join();
+            int count = webParser.crawl();
             String message = MessageFormat
                     .format("{0}: {1} pages processed.", webParser.getSite().getName(), count);
             logger.info(message);
             if (!WebParser.stopped()) {
                 saveSiteStatus(site, StatusType.INDEXED);
+                if (!site.isServing()) {
+                    serveGeneration(site);
+                }
             } else {
                 site.setLastError("Индексация прервана пользователем");
                 saveSiteStatus(site, StatusType.FAILED);
             }
-        } catch (CancellationException e) {
-            e.printStackTrace();
+        } catch (RuntimeException e) {
+            // database, fetch and scheduler failures must not leave the site INDEXING
+            logger.error(e.getMessage(), e);
             site.setLastError("Ошибка индексации: " + e.getMessage());
             saveSiteStatus(site, StatusType.FAILED);
+        } finally {
+            searchCache.invalidate(site.getId());
         }
     }
 
@@ -108,7 +206,26 @@ public class IndexingService {
         }
     }
 
-    @SneakyThrows
+    public Response getCrawlSchedule() {
+        return new CrawlScheduleResponse(true, crawlScheduler.getWorkerCount(), crawlScheduler.getSchedule());
+    }
+
+    /**
+     * Changes the crawl worker share of a configured site; takes effect immediately, also during indexing.
+     */
+    public Response configureCrawl(String url, Integer weight, Integer maxWorkers) {
+        if (!crawlScheduler.isScheduled(url)) {
+            return new ErrorResponse(false, "Данный сайт не указан в конфигурационном файле");
+        } else if ((weight != null && weight < 1) || (maxWorkers != null && maxWorkers < 1)) {
+            return new ErrorResponse(false, "Вес и число потоков сайта должны быть положительными");
+        }
+        crawlScheduler.configure(url, weight, maxWorkers);
+        return new IndexResponse(true);
+    }
+
+    /**
+     * Queues a page for indexing and returns its job id; pages are indexed in the background.
+     */
     public Response indexPage(String url) {
         if (url.isEmpty()) {
             return new ErrorResponse(false, "Требуется ввести URL");
@@ -116,44 +233,138 @@ public class IndexingService {
             return new ErrorResponse(false, "Данная страница находится за пределами сайтов, " +
                     "указанных в конфигурационном файле");
         }
-        Site site;
-        StatusType initStatusType = null;
-        Pattern pattern = Pattern.compile("^(?:https?:\\/\\/)?(?:www\\.)?([a-zA-Z0-9-]+\\.[a-zA-Z]{2,})(?:$|\\/)");
-        Matcher matcher = pattern.matcher(url);
-        if (matcher.find()) {
-            String domainName = matcher.group();
-            site = siteRepository.findSiteByUrl(domainName.replaceAll("/w{3}\\.", "/"));
-            initStatusType = site.getStatus();
-        } else {
-            site = createNewSite(url);
+        return new IndexPageResponse(true, pageIndexQueue.submit(url).getId());
+    }
+
+    /**
+     * @param jobId a job returned by {@link #indexPage(String)}, or {@code null} for all kept jobs
+     */
+    public Response getPageIndexJobs(Long jobId) {
+        if (jobId == null) {
+            return new PageIndexJobsResponse(true, pageIndexQueue.getJobs());
+        }
+        PageIndexJob job = pageIndexQueue.getJob(jobId);
+        if (job == null) {
+            return new ErrorResponse(false, "Задание индексации не найдено");
         }
-        if (initStatusType == StatusType.INDEXING) {
-            return new ErrorResponse(false, "Индексация уже запущена");
+        return new PageIndexJobsResponse(true, Collections.singletonList(job));
+    }
+
+    /**
+     * Indexes a batch of queued pages site by site. Lemma frequencies of all pages of a site are
+     * written with one upsert and their index rows as one batch.
+     */
+    private void indexPages(List<PageIndexJob> jobs) {
+        Map<Long, Site> sites = new LinkedHashMap<>();
+        Map<Long, List<PageIndexJob>> jobsBySite = new HashMap<>();
+        Set<Long> createdSiteIds = new HashSet<>();
+        for (PageIndexJob job : jobs) {
+            Site site = findServingSite(job.getUrl());
+            if (site == null) {
+                site = createNewSite(job.getUrl());
+                if (site == null) {
+                    job.fail("Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
+                    continue;
+                }
+                createdSiteIds.add(site.getId());
+            }
+            sites.putIfAbsent(site.getId(), site);
+            jobsBySite.computeIfAbsent(site.getId(), id -> new ArrayList<>()).add(job);
+        }
+        sites.forEach((siteId, site) -> indexSitePages(site, jobsBySite.get(siteId),
+                createdSiteIds.contains(siteId) ? StatusType.INDEXED : site.getStatus()));
+    }
+
+    /**
+     * Fetches the pages first, then writes them with their lemma frequencies and index rows in
+     * one transaction. The in-memory index changes only once that commits, so a failed batch
+     * leaves pages, index rows and postings as they were.
+     */
+    private void indexSitePages(Site site, List<PageIndexJob> jobs, StatusType finalStatus) {
+        if (site.getStatus() == StatusType.INDEXING) {
+            jobs.forEach(job -> job.fail("Индексация уже запущена"));
+            return;
         }
-        assert site != null;
         saveSiteStatus(site, StatusType.INDEXING);
-        WebParser webParser = newWebParse(site);
-        Map.Entry<Page, Boolean> pageEntry = webParser.addPage(url);
-        if (pageEntry == null) {
-            return new ErrorResponse(false, "Требуется ввести корректный URL, " +
-                    "можете попробовать скопировать его из адресной строки браузера");
-        }
-        Page page = pageEntry.getKey();
-        Map<String, Integer> lemmaRankMap = lemmatisator.collectLemmasAndRanks(page.getContent());
-        for (Map.Entry<String, Integer> entry : lemmaRankMap.entrySet()) {
-            String lemmaString = entry.getKey();
-            int rank = entry.getValue();
-            Lemma lemma = updateOrCreateLemma(site, lemmaString);
-            Index index = indexRepository.findByLemmaAndPage(lemma, page);
-            if (index == null) {
-                index = new Index(lemma, page, rank);
-            } else {
-                index.setRank(rank);
+        try {
+            WebParser webParser = newWebParse(site);
+            Map<String, LemmatizedPage> lemmatizedPages = new LinkedHashMap<>();
+            List<PageIndexJob> fetchedJobs = new ArrayList<>();
+            for (PageIndexJob job : jobs) {
+                LemmatizedPage lemmatizedPage = webParser.fetchPage(job.getUrl());
+                if (lemmatizedPage == null) {
+                    job.fail("Требуется ввести корректный URL, " +
+                            "можете попробовать скопировать его из адресной строки браузера");
+                    continue;
+                }
+                fetchedJobs.add(job);
+                // the same page under another URL of this batch is indexed once
+                lemmatizedPages.putIfAbsent(lemmatizedPage.getPage().getPath(), lemmatizedPage);
+            }
+            Map<Long, List<Long>> replacedLemmaIds = new HashMap<>();
+            List<Index> indices = transactionTemplate.execute(status ->
+                    savePages(site, lemmatizedPages.values(), replacedLemmaIds));
+            replacedLemmaIds.forEach((pageId, lemmaIds) -> invertedIndex.removePage(site.getId(), pageId, lemmaIds));
+            for (LemmatizedPage lemmatizedPage : lemmatizedPages.values()) {
+                Page page = lemmatizedPage.getPage();
+                invertedIndex.addPage(site.getId(), lemmatizedPage.getPreviousCode(), page.getCode());
+                invertedIndex.setPageLength(site.getId(), page.getId(), lemmatizedPage.getWordCount());
             }
-            indexRepository.save(index);
+            indices.forEach(index -> invertedIndex.addPosting(site.getId(), index.getLemma().getId(),
+                    index.getLemma().getLemmaString(), index.getPage().getId(), index.getRank()));
+            fetchedJobs.forEach(PageIndexJob::complete);
+            logger.info(MessageFormat.format("{0}: {1} queued pages indexed", site.getName(),
+                    lemmatizedPages.size()));
+        } catch (RuntimeException e) {
+            logger.error(e.getMessage(), e);
+            jobs.stream().filter(job -> !job.hasFinished())
+                    .forEach(job -> job.fail("Ошибка индексации: " + e.getMessage()));
+        } finally {
+            searchCache.invalidate(site.getId());
+            saveSiteStatus(site, finalStatus);
         }
-        saveSiteStatus(site, initStatusType == null ? StatusType.INDEXED : initStatusType);
-        return new IndexResponse(true);
+    }
+
+    /**
+     * Replaces the index rows of fetched pages. Runs in the caller's transaction.
+     *
+     * @param replacedLemmaIds receives, per changed page, the lemmas of its deleted index rows
+     * @return the new index rows
+     */
+    private List<Index> savePages(Site site, Collection<LemmatizedPage> lemmatizedPages,
+                                  Map<Long, List<Long>> replacedLemmaIds) {
+        LemmaDictionary.Batch lemmaFrequencies = new LemmaDictionary(site, lemmaRepository, jdbcTemplate).newBatch();
+        for (LemmatizedPage lemmatizedPage : lemmatizedPages) {
+            Page page = lemmatizedPage.getPage();
+            if (lemmatizedPage.isChanged()) {
+                List<Long> lemmaIds = new ArrayList<>();
+                for (Lemma lemma : indexRepository.findLemmasByPageId(site.getId(), page.getId())) {
+                    lemmaFrequencies.uncount(lemma.getLemmaString());
+                    lemmaIds.add(lemma.getId());
+                }
+                replacedLemmaIds.put(page.getId(), lemmaIds);
+                indexRepository.deleteAllByPage(site.getId(), page);
+            }
+            pageRepository.save(page);
+            lemmatizedPage.getLemmaPositions().keySet().forEach(lemmaFrequencies::count);
+        }
+        lemmaFrequencies.flush();
+        List<Index> indices = new ArrayList<>();
+        for (LemmatizedPage lemmatizedPage : lemmatizedPages) {
+            lemmatizedPage.getLemmaPositions().forEach((lemmaString, positions) ->
+                    indices.add(new Index(lemmaFrequencies.get(lemmaString), lemmatizedPage.getPage(), positions)));
+        }
+        batchWriter.saveIndices(indices);
+        return indices;
+    }
+
+    private Site findServingSite(String url) {
+        Pattern pattern = Pattern.compile("^(?:https?:\\/\\/)?(?:www\\.)?([a-zA-Z0-9-]+\\.[a-zA-Z]{2,})(?:$|\\/)");
+        Matcher matcher = pattern.matcher(url);
+        if (!matcher.find()) {
+            return null;
+        }
+        return siteRepository.findServingSiteByUrl(matcher.group().replaceAll("/w{3}\\.", "/"));
     }
 
     private Site createNewSite(String url) {
@@ -161,6 +372,7 @@ public class IndexingService {
             if (url.replaceAll(HTTP_S_WWW, "")
                     .contains(initSite.getUrl().replaceAll(HTTP_S_WWW, ""))) {
                 Site site = new Site(initSite.getUrl(), initSite.getName());
+                site.setServing(true);
                 saveSiteStatus(site, StatusType.FAILED);
                 return site;
             }
@@ -168,40 +380,56 @@ public class IndexingService {
         return null;
     }
 
-    private Lemma updateOrCreateLemma(Site site, String lemmaString) {
-        Lemma lemma = lemmaRepository.findLemmaByLemmaStringAndSite(lemmaString, site);
-        if (lemma == null) {
-            lemma = new Lemma(site, lemmaString);
-            lemmaRepository.save(lemma);
-        }
-        return lemma;
-    }
-
     public static boolean isIndexing() {
         return indexing.get();
     }
 
     private WebParser newWebParse(Site site) {
-        WebParser webParser = new WebParser(initSiteList, pageRepository, lemmaRepository, indexRepository, config,
-                lemmatisator, Collections.singletonList(site.getUrl()));
+        WebParser webParser = new WebParser(pageRepository, indexRepository,
+                new LemmaDictionary(site, lemmaRepository, jdbcTemplate), batchWriter, pageFetcher, config,
+                lemmatisator, invertedIndex, crawlMetrics, crawlScheduler, siteDiscovery, transactionTemplate,
+                visitedSet, Collections.singletonList(site.getUrl()));
         webParser.setSite(site);
         return webParser;
     }
 
-    private List<WebParser> createWebParsers(List<searchengine.config.Site> initSites) {
+    private List<WebParser> createWebParsers(List<searchengine.config.Site> initSites, boolean resume,
+                                             boolean incremental) {
         List<WebParser> webParserList = new ArrayList<>();
         for (searchengine.config.Site initSite : initSites) {
-            Site site = siteRepository.findSiteByUrl(initSite.getUrl());
-            if (site == null) {
-                site = new Site(initSite.getUrl(), initSite.getName());
-            }
-            webParserList.add(newWebParse(site));
+            webParserList.add(newWebParse(selectGeneration(initSite, resume, incremental)));
         }
         return webParserList;
     }
 
+    /**
+     * Picks the generation a crawl writes into: a resumed crawl continues the newest one, an
+     * incremental crawl updates the serving one, and a full crawl starts a new one, which serves
+     * right away only if the site has no index yet. Generations left by failed full crawls are dropped.
+     */
+    private Site selectGeneration(searchengine.config.Site initSite, boolean resume, boolean incremental) {
+        Site site;
+        if (resume) {
+            site = siteRepository.findFirstByUrlOrderByIdDesc(initSite.getUrl());
+        } else if (incremental) {
+            site = siteRepository.findServingSiteByUrl(initSite.getUrl());
+        } else {
+            siteRepository.findAllByUrlAndServingFalse(initSite.getUrl()).forEach(this::dropGeneration);
+            site = null;
+        }
+        if (site == null) {
+            site = new Site(initSite.getUrl(), initSite.getName());
+            site.setServing(siteRepository.findServingSiteByUrl(initSite.getUrl()) == null);
+        }
+        return site;
+    }
+
     private void saveSiteStatus(Site site, StatusType status) {
+        boolean created = site.getId() == null;
         site.setStatus(status);
         siteRepository.save(site);
+        if (created) {
+            sitePartitions.create(site.getId());
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package searchengine.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import searchengine.dto.index.PageIndexJob;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Pages submitted for indexing, worked off by one background thread in batches of up to
+ * {@code batchSize} pages. A URL submitted again while it is still queued gets the queued job.
+ * The last {@code history} jobs are kept for status requests.
+ */
+public class PageIndexQueue {
+    public static final Logger logger = LogManager.getLogger(PageIndexQueue.class);
+
+    private final int batchSize;
+    private final int history;
+    private final Consumer<List<PageIndexJob>> indexer;
+    private final AtomicLong jobIds = new AtomicLong();
+    private final Map<String, PageIndexJob> queued = new LinkedHashMap<>();
+    private final Map<Long, PageIndexJob> jobs = new LinkedHashMap<>();
+    private Thread worker;
+
+    public PageIndexQueue(int batchSize, int history, Consumer<List<PageIndexJob>> indexer) {
+        this.batchSize = Math.max(1, batchSize);
+        this.history = history;
+        this.indexer = indexer;
+    }
+
+    public synchronized PageIndexJob submit(String url) {
+        PageIndexJob job = queued.get(url);
+        if (job != null) {
+            return job;
+        }
+        job = new PageIndexJob(jobIds.incrementAndGet(), url);
+        queued.put(url, job);
+        jobs.put(job.getId(), job);
+        forgetFinishedJobs();
+        if (worker == null) {
+            worker = new Thread(this::work, "page-indexer");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        notifyAll();
+        return job;
+    }
+
+    public synchronized PageIndexJob getJob(long id) {
+        return jobs.get(id);
+    }
+
+    public synchronized List<PageIndexJob> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * Drops the oldest finished jobs beyond {@code history}; queued and running jobs are kept.
+     */
+    private void forgetFinishedJobs() {
+        Iterator<PageIndexJob> iterator = jobs.values().iterator();
+        while (jobs.size() > history && iterator.hasNext()) {
+            if (iterator.next().hasFinished()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private synchronized List<PageIndexJob> take() throws InterruptedException {
+        while (queued.isEmpty()) {
+            wait();
+        }
+        List<PageIndexJob> batch = new ArrayList<>();
+        Iterator<PageIndexJob> iterator = queued.values().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            PageIndexJob job = iterator.next();
+            iterator.remove();
+            job.start();
+            batch.add(job);
+        }
+        return batch;
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<PageIndexJob> batch;
+            try {
+                batch = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                indexer.accept(batch);
+            } catch (RuntimeException e) {
+                logger.error(e.getMessage(), e);
+                batch.stream().filter(job -> !job.hasFinished())
+                        .forEach(job -> job.fail("Ошибка индексации: " + e.getMessage()));
+            }
+        }
+    }
+}
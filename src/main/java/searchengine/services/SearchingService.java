@@ -8,14 +8,9 @@ import searchengine.dto.search.Search;
 import searchengine.dto.responses.ErrorResponse;
 import searchengine.dto.responses.SearchResponse;
 import searchengine.services.searching.SearchEngine;
-import searchengine.dto.search.SearchResult;
 import searchengine.model.Site;
 import searchengine.repository.*;
 
-
-import java.util.ArrayList;
-import java.util.List;
-
 @Service
 public class SearchingService {
 
@@ -34,7 +29,7 @@ public class SearchingService {
         }
         Site site = null;
         if (siteUrl != null) {
-            site = siteRepository.findSiteByUrl(siteUrl);
+            site = siteRepository.findServingSiteByUrl(siteUrl);
             if (site == null) {
                 return new ErrorResponse(false, "Указанная страница не найдена");
             }
@@ -45,10 +40,6 @@ public class SearchingService {
         if (search.getCount() < offset) {
             return new ErrorResponse(false, "Некорректное значение смещения");
         }
-        List<SearchResult> resultList = new ArrayList<>(search.getSearchResultSet());
-
-        resultList = resultList.subList(offset, Math.min(offset + limit, search.getCount()));
-
-        return new SearchResponse(search.isResult(), search.getCount(), resultList);
+        return new SearchResponse(search.isResult(), search.getCount(), search.getSearchResults());
     }
 }
\ No newline at end of file
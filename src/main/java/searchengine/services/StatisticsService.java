@@ -5,10 +5,12 @@ import org.springframework.stereotype.Service;
 
 import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.Statistics;
+import searchengine.dto.responses.SearchCacheResponse;
 import searchengine.dto.responses.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
 import searchengine.model.Site;
 import searchengine.repository.*;
+import searchengine.services.searching.SearchCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,21 +20,28 @@ public class StatisticsService {
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
+    private final SearchCache searchCache;
 
     @Autowired
     public StatisticsService(SiteRepository siteRepository,
                              PageRepository pageRepository,
-                             LemmaRepository lemmaRepository) {
+                             LemmaRepository lemmaRepository,
+                             SearchCache searchCache) {
         this.siteRepository = siteRepository;
         this.pageRepository = pageRepository;
         this.lemmaRepository = lemmaRepository;
+        this.searchCache = searchCache;
+    }
+
+    public SearchCacheResponse getSearchCacheStatistics() {
+        return new SearchCacheResponse(true, searchCache.getStatistics());
     }
 
     public StatisticsResponse getStatistics() {
         TotalStatistics total = new TotalStatistics(0, 0L, 0L, false);
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
 
-        List<Site> sites = siteRepository.findAll();
+        List<Site> sites = siteRepository.findLatestGenerations();
         for (Site site : sites) {
             long pages = pageRepository.countBySite(site);
             long lemmas = lemmaRepository.countBySite(site);
@@ -0,0 +1,221 @@
+package searchengine.services.parsing;
+
+import lombok.Getter;
+import searchengine.exceptions.IndexingException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Link queue of a site crawl backed by an append-only log on local disk. Every queued link is
+ * logged as {@code Q <depth> <url>} and every processed one as {@code D <url>}, so after a stop
+ * or a crash the queue can be rebuilt by replaying the log. Links closer to the start page are
+ * handed out first.
+ * <p>
+ * Queued links must reach the log before their parent page is stored, because a resumed crawl
+ * never fetches a stored page again to re-discover them. {@link #flush()} is called once the
+ * links of a page are queued and {@link #sync()} before a batch of pages is written; processed
+ * links are flushed lazily, since losing them only costs a repeated fetch.
+ */
+public class CrawlFrontier {
+
+    private static final String QUEUED = "Q ";
+    private static final String DONE = "D ";
+    private static final int DONE_FLUSH_INTERVAL = 100;
+
+    private final Path logFile;
+    private final BlockingQueue<Link> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private FileChannel channel;
+    private BufferedWriter writer;
+    private int unflushedRecords;
+
+    public CrawlFrontier(Path directory, long siteId) {
+        this.logFile = directory.resolve(siteId + ".log");
+    }
+
+    /**
+     * Replays the log of an interrupted crawl. Links logged as queued but neither processed
+     * nor already stored are put back in the queue.
+     *
+     * @return every link the interrupted crawl had discovered
+     */
+    public List<String> restore(Set<String> storedPaths) {
+        if (!Files.exists(logFile)) {
+            return new ArrayList<>();
+        }
+        Map<String, Integer> discovered = new LinkedHashMap<>();
+        Set<String> done = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(QUEUED)) {
+                    // logs written before depths were recorded hold the URL only
+                    int separator = line.indexOf(' ', QUEUED.length());
+                    String depth = separator < 0 ? "" : line.substring(QUEUED.length(), separator);
+                    if (!depth.isEmpty() && depth.chars().allMatch(Character::isDigit)) {
+                        discovered.putIfAbsent(line.substring(separator + 1), Integer.parseInt(depth));
+                    } else {
+                        discovered.putIfAbsent(line.substring(QUEUED.length()), 0);
+                    }
+                } else if (line.startsWith(DONE)) {
+                    done.add(line.substring(DONE.length()));
+                }
+            }
+        } catch (IOException e) {
+            throw new IndexingException("Error occurred while reading crawl frontier " + logFile, e);
+        }
+        discovered.forEach((link, depth) -> {
+            if (!done.contains(link) && !storedPaths.contains(link)) {
+                queue.add(new Link(link, depth, sequence.getAndIncrement()));
+            }
+        });
+        return new ArrayList<>(discovered.keySet());
+    }
+
+    /**
+     * @param depth number of links followed from the start page
+     */
+    public void add(String link, int depth) {
+        queue.add(new Link(link, depth, sequence.getAndIncrement()));
+        append(QUEUED, depth + " " + link);
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public Link poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    public void markDone(String link) {
+        append(DONE, link);
+    }
+
+    /**
+     * Hands the logged records to the operating system, so they survive a crash of the process.
+     */
+    public synchronized void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+            unflushedRecords = 0;
+        } catch (IOException e) {
+            throw new IndexingException("Error occurred while writing crawl frontier " + logFile, e);
+        }
+    }
+
+    /**
+     * Flushes the log and forces it to disk, so the records also survive a crash of the machine.
+     */
+    public synchronized void sync() {
+        if (writer == null) {
+            return;
+        }
+        flush();
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new IndexingException("Error occurred while writing crawl frontier " + logFile, e);
+        }
+    }
+
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new IndexingException("Error occurred while closing crawl frontier " + logFile, e);
+        } finally {
+            writer = null;
+            channel = null;
+        }
+    }
+
+    /**
+     * Closes and removes the log once the crawl has finished.
+     */
+    public void delete() {
+        close();
+        try {
+            Files.deleteIfExists(logFile);
+        } catch (IOException e) {
+            throw new IndexingException("Error occurred while deleting crawl frontier " + logFile, e);
+        }
+    }
+
+    public static void deleteAll(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> logFiles = Files.list(directory)) {
+            for (Path logFile : (Iterable<Path>) logFiles::iterator) {
+                Files.deleteIfExists(logFile);
+            }
+        } catch (IOException e) {
+            throw new IndexingException("Error occurred while clearing crawl frontiers in " + directory, e);
+        }
+    }
+
+    private synchronized void append(String type, String link) {
+        try {
+            if (writer == null) {
+                Files.createDirectories(logFile.getParent());
+                channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+                writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1));
+            }
+            writer.write(type);
+            writer.write(link);
+            writer.newLine();
+            if (++unflushedRecords >= DONE_FLUSH_INTERVAL) {
+                writer.flush();
+                unflushedRecords = 0;
+            }
+        } catch (IOException e) {
+            throw new IndexingException("Error occurred while writing crawl frontier " + logFile, e);
+        }
+    }
+
+    @Getter
+    public static class Link implements Comparable<Link> {
+        private final String url;
+        private final int depth;
+        private final long sequence;
+
+        private Link(String url, int depth, long sequence) {
+            this.url = url;
+            this.depth = depth;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Link other) {
+            int byDepth = Integer.compare(depth, other.depth);
+            return byDepth != 0 ? byDepth : Long.compare(sequence, other.sequence);
+        }
+    }
+}
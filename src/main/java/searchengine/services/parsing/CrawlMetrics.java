@@ -0,0 +1,128 @@
+package searchengine.services.parsing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crawler meters, tagged by site name. Pages per second come from the rate of {@code crawler.pages}.
+ */
+@Component
+public class CrawlMetrics {
+
+    public static final String STORED = "stored";
+    public static final String UNCHANGED = "unchanged";
+    public static final String FAILED = "failed";
+    public static final String MALFORMED_URL = "malformed_url";
+    public static final String CONNECTION = "connection";
+
+    private final MeterRegistry registry;
+    private final Map<String, SiteMetrics> sites = new ConcurrentHashMap<>();
+    private final Map<String, Timer> fetchTimers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CrawlMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public SiteMetrics forSite(String siteName) {
+        return sites.computeIfAbsent(siteName, SiteMetrics::new);
+    }
+
+    /**
+     * Records the time from sending a request to receiving the whole response.
+     */
+    public void recordFetch(String host, long nanos) {
+        fetchTimers.computeIfAbsent(host, key -> Timer.builder("crawler.fetch")
+                .description("Page fetch latency")
+                .tag("host", key)
+                .publishPercentileHistogram()
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a page or file that could not be fetched, by reason.
+     */
+    public void fetchFailed(String reason) {
+        Counter.builder("crawler.fetch.errors")
+                .description("Failed fetches by reason")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    public class SiteMetrics {
+        private final Counter storedPages;
+        private final Counter unchangedPages;
+        private final Counter failedPages;
+        private final Timer lemmatization;
+        private final Timer batchFlush;
+        private final DistributionSummary batchSize;
+        private final AtomicInteger frontierSize;
+
+        private SiteMetrics(String siteName) {
+            Tags tags = Tags.of("site", siteName);
+            storedPages = pageCounter(tags, STORED);
+            unchangedPages = pageCounter(tags, UNCHANGED);
+            failedPages = pageCounter(tags, FAILED);
+            lemmatization = Timer.builder("crawler.lemmatize")
+                    .description("Text extraction and lemmatization time per page")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            batchFlush = Timer.builder("crawler.batch.flush")
+                    .description("Time to write a batch of pages with their lemmas and index rows")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            batchSize = DistributionSummary.builder("crawler.batch.size")
+                    .description("Pages per written batch")
+                    .baseUnit("pages")
+                    .tags(tags)
+                    .register(registry);
+            frontierSize = registry.gauge("crawler.frontier.size", tags, new AtomicInteger());
+        }
+
+        private Counter pageCounter(Tags tags, String result) {
+            return Counter.builder("crawler.pages")
+                    .description("Crawled pages by result")
+                    .tags(tags)
+                    .tag("result", result)
+                    .register(registry);
+        }
+
+        public void pagesStored(int count) {
+            storedPages.increment(count);
+        }
+
+        public void pageUnchanged() {
+            unchangedPages.increment();
+        }
+
+        public void pagesFailed(int count) {
+            failedPages.increment(count);
+        }
+
+        public void recordLemmatization(long nanos) {
+            lemmatization.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void recordBatch(int pages, long nanos) {
+            batchSize.record(pages);
+            batchFlush.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void setFrontierSize(int size) {
+            frontierSize.set(size);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package searchengine.services.parsing;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.Config;
+import searchengine.config.InitSiteList;
+import searchengine.dto.statistics.SiteSchedule;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the parsing and lemmatizing work of all site crawls on one fixed set of
+ * {@code crawlWorkers} threads. Sites share the workers by weighted fair queuing: a free worker
+ * takes a task of the site that has received the least worker time relative to its weight,
+ * skipping sites already running their {@code maxWorkers} tasks. A site without work takes
+ * no share, so the remaining sites use the whole budget. Within a site, pages closer to the
+ * start page run first.
+ * <p>
+ * Batch writes block on the database, so they run on a separate pool of {@code persistThreads}
+ * threads shared by all sites; slow writes then cannot take the workers away from lemmatization.
+ */
+@Component
+public class CrawlScheduler {
+    public static final Logger logger = LogManager.getLogger(CrawlScheduler.class);
+
+    private final Object lock = new Object();
+    private final Map<String, SiteQueue> queues = new LinkedHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final int workerCount;
+    private final ExecutorService persistExecutor;
+    private long sequence;
+
+    @Autowired
+    public CrawlScheduler(Config config, InitSiteList initSiteList) {
+        this.workerCount = config.getCrawlWorkers();
+        for (searchengine.config.Site initSite : initSiteList.getSites()) {
+            SiteQueue queue = queue(initSite.getUrl());
+            queue.weight = initSite.getWeight();
+            queue.maxWorkers = initSite.getMaxWorkers() == null ? workerCount : initSite.getMaxWorkers();
+        }
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "crawl-worker-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.persistExecutor = Executors.newFixedThreadPool(config.getPersistThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "crawl-persist-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a batch write of a site on the persist pool.
+     */
+    public void persist(String siteUrl, Runnable runnable) {
+        persistExecutor.execute(() -> {
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                logger.error(siteUrl + " -- Persist task failed", e);
+            }
+        });
+    }
+
+    public SiteQueue queue(String siteUrl) {
+        synchronized (lock) {
+            return queues.computeIfAbsent(siteUrl, SiteQueue::new);
+        }
+    }
+
+    /**
+     * Changes the share of a site, also while it is being crawled.
+     *
+     * @param weight     relative share of worker time, {@code null} to keep the current one
+     * @param maxWorkers tasks of the site allowed to run at once, {@code null} to keep the current limit
+     */
+    public void configure(String siteUrl, Integer weight, Integer maxWorkers) {
+        synchronized (lock) {
+            SiteQueue queue = queues.computeIfAbsent(siteUrl, SiteQueue::new);
+            if (weight != null) {
+                queue.weight = weight;
+            }
+            if (maxWorkers != null) {
+                queue.maxWorkers = maxWorkers;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    public boolean isScheduled(String siteUrl) {
+        synchronized (lock) {
+            return queues.containsKey(siteUrl);
+        }
+    }
+
+    public List<SiteSchedule> getSchedule() {
+        List<SiteSchedule> schedule = new ArrayList<>();
+        synchronized (lock) {
+            queues.values().forEach(queue -> schedule.add(new SiteSchedule(queue.siteUrl, queue.weight,
+                    queue.maxWorkers, queue.running, queue.tasks.size(), queue.completed)));
+        }
+        return schedule;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.forEach(Thread::interrupt);
+        persistExecutor.shutdownNow();
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                Task task = take();
+                long start = System.nanoTime();
+                try {
+                    task.runnable.run();
+                } catch (RuntimeException e) {
+                    logger.error(task.queue.siteUrl + " -- Crawl task failed", e);
+                } finally {
+                    complete(task.queue, System.nanoTime() - start);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Task take() throws InterruptedException {
+        synchronized (lock) {
+            while (true) {
+                SiteQueue next = null;
+                for (SiteQueue queue : queues.values()) {
+                    if (!queue.tasks.isEmpty() && queue.running < queue.maxWorkers
+                            && (next == null || queue.virtualTime < next.virtualTime)) {
+                        next = queue;
+                    }
+                }
+                if (next != null) {
+                    next.running++;
+                    return next.tasks.poll();
+                }
+                lock.wait();
+            }
+        }
+    }
+
+    private void complete(SiteQueue queue, long nanos) {
+        synchronized (lock) {
+            queue.running--;
+            queue.completed++;
+            queue.virtualTime += (double) nanos / Math.max(queue.weight, 1);
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Smallest virtual time among sites with work, so a site returning from idle starts level
+     * with them instead of claiming the time it did not use.
+     */
+    private double activeVirtualTime() {
+        double min = Double.MAX_VALUE;
+        for (SiteQueue queue : queues.values()) {
+            if (!queue.tasks.isEmpty() || queue.running > 0) {
+                min = Math.min(min, queue.virtualTime);
+            }
+        }
+        return min == Double.MAX_VALUE ? 0 : min;
+    }
+
+    /**
+     * Task queue of one site. As an {@link Executor} it queues tasks with the lowest priority.
+     */
+    public class SiteQueue implements Executor {
+        private final String siteUrl;
+        private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+        private int weight = 1;
+        private int maxWorkers = workerCount;
+        private int running;
+        private long completed;
+        private double virtualTime;
+
+        private SiteQueue(String siteUrl) {
+            this.siteUrl = siteUrl;
+        }
+
+        /**
+         * @param depth lower values run first
+         */
+        public void submit(Runnable runnable, int depth) {
+            synchronized (lock) {
+                if (tasks.isEmpty() && running == 0) {
+                    virtualTime = Math.max(virtualTime, activeVirtualTime());
+                }
+                tasks.add(new Task(this, runnable, depth, sequence++));
+                lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void execute(Runnable runnable) {
+            submit(runnable, Integer.MAX_VALUE);
+        }
+    }
+
+    private static class Task implements Comparable<Task> {
+        private final SiteQueue queue;
+        private final Runnable runnable;
+        private final int depth;
+        private final long sequence;
+
+        private Task(SiteQueue queue, Runnable runnable, int depth, long sequence) {
+            this.queue = queue;
+            this.runnable = runnable;
+            this.depth = depth;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byDepth = Integer.compare(depth, other.depth);
+            return byDepth != 0 ? byDepth : Long.compare(sequence, other.sequence);
+        }
+    }
+}
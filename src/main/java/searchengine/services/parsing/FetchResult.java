@@ -0,0 +1,46 @@
+package searchengine.services.parsing;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+@Getter
+@AllArgsConstructor
+public class FetchResult {
+    public static final int NOT_MODIFIED = 304;
+
+    private final String url;
+    private final String finalUrl;
+    private final int code;
+    /**
+     * Undecoded page HTML, {@code null} when the response is not an HTML document or was not modified.
+     */
+    private final byte[] body;
+    /**
+     * Charset named in the {@code Content-Type} header, {@code null} if it names none or an unsupported one.
+     */
+    private final String charset;
+    private final String etag;
+    private final String lastModified;
+
+    public boolean isNotModified() {
+        return code == NOT_MODIFIED;
+    }
+
+    /**
+     * Decodes and parses the body. Without a header charset Jsoup takes the one declared by a byte
+     * order mark, {@code <meta charset>} or {@code http-equiv}, and falls back to UTF-8.
+     */
+    public Document parse() {
+        try {
+            return Jsoup.parse(new ByteArrayInputStream(body), charset, finalUrl);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package searchengine.services.parsing;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.Config;
+import searchengine.exceptions.WebParserException;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Non-blocking fetcher on top of the JDK {@link HttpClient}. One client is shared by all crawls,
+ * so connections are pooled per host. Requests to the same host are limited both in concurrency
+ * and in rate; requests waiting for their turn hold no threads.
+ */
+@Component
+public class HttpPageFetcher implements PageFetcher {
+
+    private static final Pattern CHARSET = Pattern.compile("(?i)\\bcharset\\s*=\\s*[\"']?([^\\s;\"']+)");
+    /**
+     * Printable ASCII characters that may not appear unescaped in a URI.
+     */
+    private static final String UNSAFE_URI_CHARACTERS = " \"<>\\^`{|}[]";
+
+    private final Config config;
+    private final CrawlMetrics crawlMetrics;
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fetch-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, HostLimiter> hostLimiters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HttpPageFetcher(Config config, CrawlMetrics crawlMetrics) {
+        this.config = config;
+        this.crawlMetrics = crawlMetrics;
+        this.httpClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(config.getConnectTimeout()))
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetch(String url, String etag, String lastModified) {
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = newRequest(url);
+            if (etag != null) {
+                builder.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                builder.header("If-Modified-Since", lastModified);
+            }
+            request = builder.GET().build();
+        } catch (IllegalArgumentException e) {
+            return malformedUrl(url, e);
+        }
+        return send(url, request, this::handleBody).thenApply(response -> {
+            HttpHeaders headers = response.headers();
+            return new FetchResult(url, response.uri().toString(), response.statusCode(), response.body(),
+                    charsetOf(headers.firstValue("Content-Type").orElse("")),
+                    headers.firstValue("ETag").orElse(null),
+                    headers.firstValue("Last-Modified").orElse(null));
+        });
+    }
+
+    @Override
+    public CompletableFuture<byte[]> fetchFile(String url) {
+        HttpRequest request;
+        try {
+            request = newRequest(url).GET().build();
+        } catch (IllegalArgumentException e) {
+            return malformedUrl(url, e);
+        }
+        return send(url, request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> response.statusCode() < 400 ? response.body() : null);
+    }
+
+    @Override
+    public void setCrawlDelay(String host, long millis) {
+        hostLimiters.computeIfAbsent(host, key -> new HostLimiter()).setMinInterval(millis);
+    }
+
+    private <T> CompletableFuture<T> malformedUrl(String url, IllegalArgumentException e) {
+        crawlMetrics.fetchFailed(CrawlMetrics.MALFORMED_URL);
+        return CompletableFuture.failedFuture(new WebParserException(url + " -- Malformed URL", e));
+    }
+
+    private HttpRequest.Builder newRequest(String url) {
+        return HttpRequest.newBuilder(toUri(url))
+                .timeout(Duration.ofMillis(config.getRequestTimeout()))
+                .header("User-Agent", config.getUserAgent())
+                .header("Referer", config.getReferrer());
+    }
+
+    /**
+     * Sends the request once its host limiter lets it start.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> send(String url, HttpRequest request,
+                                                        HttpResponse.BodyHandler<T> bodyHandler) {
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        String host = String.valueOf(request.uri().getHost());
+        HostLimiter hostLimiter = hostLimiters.computeIfAbsent(host, key -> new HostLimiter());
+        hostLimiter.submit(() -> {
+            try {
+                long start = System.nanoTime();
+                httpClient.sendAsync(request, bodyHandler).whenComplete((response, throwable) -> {
+                    hostLimiter.release();
+                    crawlMetrics.recordFetch(host, System.nanoTime() - start);
+                    if (throwable != null) {
+                        crawlMetrics.fetchFailed(CrawlMetrics.CONNECTION);
+                        result.completeExceptionally(new WebParserException(url +
+                                " -- Error occurred while trying to establish connection", throwable));
+                    } else {
+                        result.complete(response);
+                    }
+                });
+            } catch (RuntimeException e) {
+                hostLimiter.release();
+                crawlMetrics.fetchFailed(CrawlMetrics.CONNECTION);
+                result.completeExceptionally(new WebParserException(url + " -- Request was rejected", e));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Keeps the body undecoded, so that the charset declared in the markup can still be detected
+     * when parsing.
+     */
+    private HttpResponse.BodySubscriber<byte[]> handleBody(HttpResponse.ResponseInfo responseInfo) {
+        if (responseInfo.statusCode() == FetchResult.NOT_MODIFIED) {
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        String contentType = responseInfo.headers().firstValue("Content-Type").orElse("text/html");
+        if (isHtml(contentType)) {
+            return HttpResponse.BodySubscribers.ofByteArray();
+        }
+        return HttpResponse.BodySubscribers.replacing(null);
+    }
+
+    private static boolean isHtml(String contentType) {
+        String mimeType = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return mimeType.equals("text/html") || mimeType.equals("application/xhtml+xml");
+    }
+
+    private static String charsetOf(String contentType) {
+        Matcher matcher = CHARSET.matcher(contentType);
+        if (!matcher.find()) {
+            return null;
+        }
+        try {
+            return Charset.isSupported(matcher.group(1)) ? matcher.group(1) : null;
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a link as browsers do: spaces, {@code |}, non-ASCII letters and other characters a
+     * {@link URI} may not contain are percent-encoded as UTF-8, existing escapes are kept.
+     */
+    static URI toUri(String url) {
+        try {
+            return new URI(url);
+        } catch (URISyntaxException e) {
+            try {
+                return new URI(encodeUnsafeCharacters(url));
+            } catch (URISyntaxException encodedException) {
+                throw new IllegalArgumentException(encodedException.getMessage(), encodedException);
+            }
+        }
+    }
+
+    private static String encodeUnsafeCharacters(String url) {
+        StringBuilder encoded = new StringBuilder(url.length() + 16);
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            boolean escape = c == '%' && i + 2 < url.length()
+                    && Character.digit(url.charAt(i + 1), 16) >= 0 && Character.digit(url.charAt(i + 2), 16) >= 0;
+            if (c > 0x20 && c < 0x7F && UNSAFE_URI_CHARACTERS.indexOf(c) < 0 && (c != '%' || escape)) {
+                encoded.append(c);
+                continue;
+            }
+            int end = Character.isHighSurrogate(c) && i + 1 < url.length() ? i + 2 : i + 1;
+            for (byte b : url.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                encoded.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+            }
+            i = end - 1;
+        }
+        return encoded.toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Starts queued requests of one host while the host is below its concurrency limit,
+     * spacing request starts by the configured rate.
+     */
+    private class HostLimiter {
+        private final Deque<Runnable> waiting = new ArrayDeque<>();
+        private final long rateIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1)
+                / config.getRequestsPerSecondPerHost());
+        private long intervalNanos = rateIntervalNanos;
+        private int active;
+        private long nextStart = System.nanoTime();
+
+        synchronized void setMinInterval(long millis) {
+            intervalNanos = Math.max(rateIntervalNanos, TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        synchronized void submit(Runnable request) {
+            waiting.add(request);
+            dispatch();
+        }
+
+        synchronized void release() {
+            active--;
+            dispatch();
+        }
+
+        private void dispatch() {
+            while (active < config.getMaxConnectionsPerHost() && !waiting.isEmpty()) {
+                Runnable request = waiting.poll();
+                active++;
+                long now = System.nanoTime();
+                long start = nextStart - now > 0 ? nextStart : now;
+                nextStart = start + intervalNanos;
+                scheduler.schedule(request, start - now, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
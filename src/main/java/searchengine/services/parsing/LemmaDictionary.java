@@ -0,0 +1,142 @@
+package searchengine.services.parsing;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.model.Lemma;
+import searchengine.model.Site;
+import searchengine.repository.LemmaRepository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lemmas of one site for the duration of a crawl. Page frequencies are counted per write batch,
+ * without locks and without queries; {@link Batch#flush()} writes the deltas of a batch with a
+ * single {@code INSERT ... ON CONFLICT DO UPDATE} in the caller's transaction and picks up the ids
+ * of new lemmas. They become visible to other batches only after {@link Batch#commit()}, so a
+ * batch that rolls back leaves neither frequencies nor lemma ids behind.
+ */
+public class LemmaDictionary {
+
+    private static final String UPSERT_SQL = "INSERT INTO lemma (id, site_id, lemma, frequency) " +
+            "SELECT nextval('lemma_id_seq'), ?, t.lemma, t.frequency " +
+            "FROM unnest(?::varchar[], ?::integer[]) AS t(lemma, frequency) " +
+            // concurrent batches lock shared lemmas in the same order
+            "ORDER BY t.lemma " +
+            "ON CONFLICT (lemma, site_id) DO UPDATE SET frequency = lemma.frequency + EXCLUDED.frequency " +
+            "RETURNING id, lemma";
+
+    private final Site site;
+    private final LemmaRepository lemmaRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, Lemma> lemmas = new ConcurrentHashMap<>();
+
+    public LemmaDictionary(Site site, LemmaRepository lemmaRepository, JdbcTemplate jdbcTemplate) {
+        this.site = site;
+        this.lemmaRepository = lemmaRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Picks up lemmas already stored for the site, so their ids are known without flushing.
+     */
+    public void preload() {
+        for (Lemma lemma : lemmaRepository.findAllBySite(site)) {
+            lemmas.put(lemma.getLemmaString(), lemma);
+        }
+    }
+
+    /**
+     * Returns the stored lemma, if a committed batch wrote it or it was preloaded.
+     */
+    public Lemma get(String lemmaString) {
+        return lemmas.get(lemmaString);
+    }
+
+    /**
+     * Starts counting the frequency changes of one write batch. A batch is used by one thread.
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    public class Batch {
+        private final Map<String, Integer> deltas = new TreeMap<>();
+        private final Map<String, Lemma> written = new HashMap<>();
+
+        private Batch() {
+        }
+
+        /**
+         * Counts one more page containing the lemma.
+         */
+        public void count(String lemmaString) {
+            deltas.merge(lemmaString, 1, Integer::sum);
+        }
+
+        /**
+         * Counts one page less containing the lemma, after the lemma disappeared from a re-crawled page.
+         */
+        public void uncount(String lemmaString) {
+            deltas.merge(lemmaString, -1, Integer::sum);
+        }
+
+        /**
+         * Writes the deltas counted so far in the caller's transaction. Lemmas counted before
+         * this call exist in the database once it returns, even if another batch wrote them.
+         */
+        public void flush() {
+            List<String> lemmaStrings = new ArrayList<>();
+            List<Integer> frequencies = new ArrayList<>();
+            deltas.forEach((lemmaString, delta) -> {
+                if (delta != 0 || get(lemmaString) == null) {
+                    lemmaStrings.add(lemmaString);
+                    frequencies.add(delta);
+                }
+            });
+            deltas.clear();
+            if (!lemmaStrings.isEmpty()) {
+                upsert(lemmaStrings, frequencies);
+            }
+        }
+
+        /**
+         * Returns the stored lemma. Valid for every lemma counted before the last {@link #flush()}.
+         */
+        public Lemma get(String lemmaString) {
+            Lemma lemma = written.get(lemmaString);
+            return lemma == null ? lemmas.get(lemmaString) : lemma;
+        }
+
+        /**
+         * Makes lemmas this batch wrote known to later batches. Call once the transaction commits.
+         */
+        public void commit() {
+            lemmas.putAll(written);
+        }
+
+        private void upsert(List<String> lemmaStrings, List<Integer> frequencies) {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(UPSERT_SQL)) {
+                    statement.setLong(1, site.getId());
+                    statement.setArray(2, connection.createArrayOf("varchar", lemmaStrings.toArray()));
+                    statement.setArray(3, connection.createArrayOf("integer", frequencies.toArray()));
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            Lemma lemma = new Lemma(site, resultSet.getString(2));
+                            lemma.setId(resultSet.getLong(1));
+                            written.put(lemma.getLemmaString(), lemma);
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+    }
+}
@@ -7,7 +7,9 @@ import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import searchengine.config.Config;
 import searchengine.exceptions.LemmatizationException;
 
 import java.io.IOException;
@@ -16,102 +18,177 @@ import java.util.*;
 @Component
 public class Lemmatisator {
 
-    private static final String[] redundantForms = {"ПРЕДЛ", "СОЮЗ", "МЕЖД", "ВВОДН", "ЧАСТ", "МС", "CONJ", "PART"};
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final int MAX_WORD_LENGTH = 45;
+    /**
+     * Parts of speech that carry no meaning for search: prepositions, conjunctions, interjections,
+     * parenthetic words, particles and pronouns.
+     */
+    private static final Set<String> redundantForms = Set.of("ПРЕДЛ", "СОЮЗ", "МЕЖД", "ВВОДН", "ЧАСТ",
+            "МС", "МС-П", "МС-ПРЕДК", "CONJ", "PART");
     private final LuceneMorphology russianMorph;
     private final LuceneMorphology englishMorph;
+    private final WordFormCache wordFormCache;
 
     @SneakyThrows
-    public Lemmatisator() {
+    @Autowired
+    public Lemmatisator(Config config) {
         try {
             russianMorph = new RussianLuceneMorphology();
             englishMorph = new EnglishLuceneMorphology();
         } catch (IOException e) {
             throw new LemmatizationException("An error occurred while initializing the Lemmatisator", e);
         }
+        wordFormCache = new WordFormCache(config.getLemmaCacheSize());
     }
 
-    private boolean isCorrectRussianWord(String word) {
-
-        List<String> wordBaseFormList = russianMorph.getMorphInfo(word);
-
-        for (String value : redundantForms) {
-            if (wordBaseFormList.toString().toUpperCase().contains(value)) {
-                return false;
+    /**
+     * Morph info entries look like {@code word|code POS grammemes}; a word is dropped if any of
+     * its readings is a redundant part of speech.
+     */
+    private static boolean isCorrectWord(LuceneMorphology morphology, String word) {
+        for (String morphInfo : morphology.getMorphInfo(word)) {
+            int posStart = morphInfo.indexOf(' ', morphInfo.indexOf('|')) + 1;
+            if (posStart == 0) {
+                continue;
             }
-        }
-        return true;
-    }
-
-    private boolean isCorrectEnglishWord(String word) {
-
-        List<String> wordBaseFormList = englishMorph.getMorphInfo(word);
-
-        for (String value : redundantForms) {
-            if (wordBaseFormList.toString().toUpperCase().contains(value)) {
+            int posEnd = morphInfo.indexOf(' ', posStart);
+            String partOfSpeech = posEnd < 0 ? morphInfo.substring(posStart) : morphInfo.substring(posStart, posEnd);
+            if (redundantForms.contains(partOfSpeech)) {
                 return false;
             }
         }
         return true;
     }
 
-    private Language checkLanguage(String word) {
-
-        String rus = "[а-яА-Я]+";
-        String eng = "[a-zA-Z]+";
-
-        if (word.matches(rus)) {
-            return Language.RUS;
-        } else if (word.matches(eng)) {
-            return Language.ENG;
-        } else {
+    private static Language checkLanguage(String word) {
+        if (word.isEmpty()) {
             return Language.UNIDENTIFIED;
         }
+        boolean russian = true;
+        boolean english = true;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            russian &= c >= 'а' && c <= 'я' || c >= 'А' && c <= 'Я';
+            english &= c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+        }
+        return russian ? Language.RUS : english ? Language.ENG : Language.UNIDENTIFIED;
     }
 
     public Map<String, Integer> collectLemmasAndRanks(String html) {
-        Document doc = Jsoup.parse(html);
-        String plainText = doc.text();
-        String[] words = plainText.toLowerCase().split("[^a-zа-я]+");
+        return collectLemmasAndRanks(Jsoup.parse(html));
+    }
+
+    public Map<String, Integer> collectLemmasAndRanks(Document doc) {
+        return collectLemmasAndRanksFromText(doc.text());
+    }
+
+    public Map<String, Integer> collectLemmasAndRanksFromText(String plainText) {
         HashMap<String, Integer> lemmas = new HashMap<>();
-        for (String word : words) {
-            if (isDictionaryWord(word)) {
-                List<String> normalForms = checkLanguage(word).equals(Language.RUS) ?
-                        russianMorph.getNormalForms(word) : englishMorph.getNormalForms(word);
-                String normalWord = normalForms.iterator().next();
-                lemmas.put(normalWord, lemmas.containsKey(normalWord) ? (lemmas.get(normalWord) + 1) : 1);
+        collectLemmaPositions(plainText).forEach((lemma, positions) -> lemmas.put(lemma, positions.length));
+        return lemmas;
+    }
+
+    /**
+     * Lemmatizes the text keeping where each lemma occurs: character offsets of its words
+     * in ascending order. The rank of a lemma is the number of its offsets.
+     */
+    public Map<String, int[]> collectLemmaPositions(String plainText) {
+        Map<String, Occurrences> occurrences = new HashMap<>();
+        int end = 0;
+        while (end < plainText.length()) {
+            int start = end;
+            while (start < plainText.length() && !isWordChar(plainText.charAt(start))) {
+                start++;
+            }
+            end = wordEnd(plainText, start);
+            if (start == end) {
+                continue;
+            }
+            String lemma = lemmaOf(plainText, start, end);
+            if (lemma != null) {
+                occurrences.computeIfAbsent(lemma, key -> new Occurrences()).add(start);
             }
         }
-        return lemmas;
+        Map<String, int[]> positions = new HashMap<>();
+        occurrences.forEach((lemma, lemmaOccurrences) -> positions.put(lemma, lemmaOccurrences.toArray()));
+        return positions;
+    }
+
+    /**
+     * Returns the offset right after the word starting at {@code start}.
+     */
+    public static int wordEnd(String text, int start) {
+        int end = start;
+        while (end < text.length() && isWordChar(text.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private static boolean isWordChar(char c) {
+        char lowerCase = Character.toLowerCase(c);
+        return lowerCase >= 'a' && lowerCase <= 'z' || lowerCase >= 'а' && lowerCase <= 'я';
     }
 
     public List<String> convertTextIntoLemmasList(String text) {
-        String[] words = text.toLowerCase().split("[^a-zа-я]+");
-        HashSet<String> lemmas = new HashSet<>();
-        for (String word : words) {
-            if (isDictionaryWord(word)) {
-                List<String> normalForms = checkLanguage(word).equals(Language.RUS) ?
-                        russianMorph.getNormalForms(word) : englishMorph.getNormalForms(word);
-                String normalWord = normalForms.iterator().next();
-                lemmas.add(normalWord);
+        Set<String> lemmas = new LinkedHashSet<>();
+        int end = 0;
+        while (end < text.length()) {
+            int start = end;
+            while (start < text.length() && !isWordChar(text.charAt(start))) {
+                start++;
+            }
+            end = wordEnd(text, start);
+            String lemma = lemmaOf(text, start, end);
+            if (lemma != null) {
+                lemmas.add(lemma);
             }
         }
         return new ArrayList<>(lemmas);
     }
 
     public String getWordLemma(String word) {
-        String normalWord = null;
-        if (isDictionaryWord(word)) {
-            List<String> normalForms = checkLanguage(word).equals(Language.RUS) ?
-                    russianMorph.getNormalForms(word) : englishMorph.getNormalForms(word);
-            normalWord = normalForms.iterator().next();
+        return lemmaOf(word, 0, word.length());
+    }
+
+    /**
+     * Returns the lemma of the word at {@code [start, end)}, or {@code null} for words that are
+     * too short, too long, of an unknown language or a redundant part of speech.
+     */
+    private String lemmaOf(String text, int start, int end) {
+        int length = end - start;
+        if (length < MIN_WORD_LENGTH || length > MAX_WORD_LENGTH) {
+            return null;
         }
-        return normalWord;
+        return wordFormCache.get(text.substring(start, end).toLowerCase(), this::lemmatize);
     }
 
-    private boolean isDictionaryWord(String word) {
-        return !(word.isBlank() || word.length() < 3 || word.length() > 45 ||
-                checkLanguage(word).equals(Language.RUS) && !isCorrectRussianWord(word) ||
-                checkLanguage(word).equals(Language.ENG) && !isCorrectEnglishWord(word) ||
-                checkLanguage(word).equals(Language.UNIDENTIFIED));
+    private String lemmatize(String word) {
+        Language language = checkLanguage(word);
+        if (language == Language.UNIDENTIFIED) {
+            return null;
+        }
+        LuceneMorphology morphology = language == Language.RUS ? russianMorph : englishMorph;
+        if (!isCorrectWord(morphology, word)) {
+            return null;
+        }
+        return morphology.getNormalForms(word).get(0);
+    }
+
+    private static class Occurrences {
+        private int[] offsets = new int[4];
+        private int size;
+
+        void add(int offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(offsets, size);
+        }
     }
-}
\ No newline at end of file
+}
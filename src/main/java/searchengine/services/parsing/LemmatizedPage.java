@@ -0,0 +1,43 @@
+package searchengine.services.parsing;
+
+import lombok.Getter;
+import searchengine.model.Page;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+public class LemmatizedPage {
+    private final Page page;
+    /**
+     * Character offsets of each lemma in the page text.
+     */
+    private final Map<String, int[]> lemmaPositions;
+    private final Map<String, Integer> lemmaRanks;
+    /**
+     * Number of lemmatized words in the page text.
+     */
+    private final int wordCount;
+    /**
+     * The page is already stored, so its index rows are diffed rather than inserted.
+     */
+    private final boolean changed;
+    /**
+     * HTTP code the page is stored with, {@code null} for a new page.
+     */
+    private final Integer previousCode;
+
+    public LemmatizedPage(Page page, Map<String, int[]> lemmaPositions, Integer previousCode) {
+        this.page = page;
+        this.lemmaPositions = lemmaPositions;
+        this.lemmaRanks = new HashMap<>();
+        int words = 0;
+        for (Map.Entry<String, int[]> entry : lemmaPositions.entrySet()) {
+            lemmaRanks.put(entry.getKey(), entry.getValue().length);
+            words += entry.getValue().length;
+        }
+        this.wordCount = words;
+        this.changed = previousCode != null;
+        this.previousCode = previousCode;
+    }
+}
@@ -0,0 +1,30 @@
+package searchengine.services.parsing;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface PageFetcher {
+    /**
+     * Starts fetching the page without blocking the caller. The future completes exceptionally
+     * with {@link searchengine.exceptions.WebParserException} when the page cannot be fetched.
+     */
+    default CompletableFuture<FetchResult> fetch(String url) {
+        return fetch(url, null, null);
+    }
+
+    /**
+     * Conditional fetch: sends {@code If-None-Match} and {@code If-Modified-Since} for the
+     * validators that are not {@code null}, so an unchanged page comes back as a bodiless 304.
+     */
+    CompletableFuture<FetchResult> fetch(String url, String etag, String lastModified);
+
+    /**
+     * Fetches a file of any content type, such as robots.txt or a gzipped sitemap. The future completes
+     * with {@code null} when the server answers with an error status.
+     */
+    CompletableFuture<byte[]> fetchFile(String url);
+
+    /**
+     * Spaces request starts to the host at least {@code millis} apart, as asked by its robots.txt.
+     */
+    void setCrawlDelay(String host, long millis);
+}
@@ -0,0 +1,35 @@
+package searchengine.services.parsing;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.util.Map;
+
+public final class PageTitles {
+
+    private PageTitles() {
+    }
+
+    /**
+     * Takes the {@code <title>} of the page, then the first {@code title} attribute of a span,
+     * then the most frequent lemma of the page.
+     */
+    public static String extract(Document document, Map<String, Integer> lemmaRanks) {
+        String title = document.title();
+        if (!title.isBlank()) {
+            return title;
+        }
+        Element span = document.selectFirst("span[title]");
+        if (span != null) {
+            return span.attr("title");
+        }
+        Map.Entry<String, Integer> maxEntry = null;
+        for (Map.Entry<String, Integer> entry : lemmaRanks.entrySet()) {
+            if (maxEntry == null || entry.getValue().compareTo(maxEntry.getValue()) > 0) {
+                maxEntry = entry;
+            }
+        }
+        return maxEntry == null ? "" :
+                maxEntry.getKey().substring(0, 1).toUpperCase() + maxEntry.getKey().substring(1);
+    }
+}
@@ -0,0 +1,160 @@
+package searchengine.services.parsing;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Rules of a robots.txt that apply to the crawler: the group named by the configured
+ * {@code robotsProductToken}, otherwise the {@code *} group. Paths are matched
+ * as in RFC 9309: the longest matching rule wins, {@code Allow} wins a tie, {@code *} matches
+ * any characters and a trailing {@code $} anchors the end.
+ */
+public class RobotsTxt {
+    public static final RobotsTxt ALLOW_ALL = new RobotsTxt(Collections.emptyList(), null, Collections.emptyList());
+
+    private final List<Rule> rules;
+    /**
+     * Crawl-delay in milliseconds, {@code null} when not set.
+     */
+    @Getter
+    private final Long crawlDelay;
+    @Getter
+    private final List<String> sitemaps;
+
+    private RobotsTxt(List<Rule> rules, Long crawlDelay, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelay = crawlDelay;
+        this.sitemaps = sitemaps;
+    }
+
+    /**
+     * @param productToken the crawler's name in robots.txt, compared with {@code User-agent} lines
+     *                     case-insensitively for equality; groups of the same agent are merged
+     */
+    public static RobotsTxt parse(String content, String productToken) {
+        String agent = productToken == null ? "" : productToken.toLowerCase(Locale.ROOT);
+        List<String> sitemaps = new ArrayList<>();
+        Map<String, List<Rule>> rulesByAgent = new HashMap<>();
+        Map<String, Long> delayByAgent = new HashMap<>();
+        List<String> groupAgents = new ArrayList<>();
+        boolean inRules = false;
+        for (String rawLine : content.split("\r\n|\r|\n")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment < 0 ? rawLine : rawLine.substring(0, comment)).trim();
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            switch (field) {
+                case "sitemap":
+                    if (!value.isEmpty()) {
+                        sitemaps.add(value);
+                    }
+                    break;
+                case "user-agent":
+                    if (inRules) {
+                        groupAgents = new ArrayList<>();
+                        inRules = false;
+                    }
+                    String groupAgent = value.toLowerCase(Locale.ROOT);
+                    groupAgents.add(groupAgent);
+                    rulesByAgent.computeIfAbsent(groupAgent, key -> new ArrayList<>());
+                    break;
+                case "allow":
+                case "disallow":
+                    inRules = true;
+                    if (!value.isEmpty()) {
+                        Rule rule = new Rule(value, field.equals("allow"));
+                        groupAgents.forEach(name -> rulesByAgent.get(name).add(rule));
+                    }
+                    break;
+                case "crawl-delay":
+                    inRules = true;
+                    Long delay = parseDelay(value);
+                    if (delay != null) {
+                        groupAgents.forEach(name -> delayByAgent.putIfAbsent(name, delay));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        String group = !agent.isEmpty() && rulesByAgent.containsKey(agent) ? agent : "*";
+        return new RobotsTxt(rulesByAgent.getOrDefault(group, Collections.emptyList()), delayByAgent.get(group),
+                sitemaps);
+    }
+
+    private static Long parseDelay(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            return seconds > 0 ? Math.round(seconds * 1000) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public boolean isAllowed(String url) {
+        if (rules.isEmpty()) {
+            return true;
+        }
+        String path = pathOf(url);
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (best == null || rule.pattern.length() > best.pattern.length()
+                    || rule.pattern.length() == best.pattern.length() && rule.allow)) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow;
+    }
+
+    private static String pathOf(String url) {
+        int scheme = url.indexOf("://");
+        int path = url.indexOf('/', scheme < 0 ? 0 : scheme + 3);
+        return path < 0 ? "/" : url.substring(path);
+    }
+
+    private static class Rule {
+        private final String pattern;
+        private final boolean allow;
+
+        private Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+        }
+
+        boolean matches(String path) {
+            boolean anchored = pattern.endsWith("$");
+            String body = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+            return matches(body, 0, path, 0, anchored);
+        }
+
+        private static boolean matches(String pattern, int p, String path, int i, boolean anchored) {
+            while (p < pattern.length()) {
+                char c = pattern.charAt(p);
+                if (c == '*') {
+                    for (int next = i; next <= path.length(); next++) {
+                        if (matches(pattern, p + 1, path, next, anchored)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                if (i >= path.length() || path.charAt(i) != c) {
+                    return false;
+                }
+                p++;
+                i++;
+            }
+            return !anchored || i == path.length();
+        }
+    }
+}
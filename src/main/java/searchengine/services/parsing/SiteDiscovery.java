@@ -0,0 +1,89 @@
+package searchengine.services.parsing;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.Config;
+import searchengine.exceptions.WebParserException;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Reads what a site publishes about itself before it is crawled: robots.txt rules and the page
+ * URLs listed in its sitemaps. Sitemaps are taken from robots.txt, or {@code /sitemap.xml} when
+ * it names none, and sitemap indexes are followed up to {@code maxSitemaps} files per site.
+ */
+@Component
+public class SiteDiscovery {
+    public static final Logger logger = LogManager.getLogger(SiteDiscovery.class);
+
+    private final PageFetcher pageFetcher;
+    private final Config config;
+
+    @Autowired
+    public SiteDiscovery(PageFetcher pageFetcher, Config config) {
+        this.pageFetcher = pageFetcher;
+        this.config = config;
+    }
+
+    /**
+     * @return rules for the configured robots product token, {@link RobotsTxt#ALLOW_ALL} when the site has no robots.txt
+     */
+    public RobotsTxt fetchRobotsTxt(String siteUrl) {
+        String url = URI.create(siteUrl).resolve("/robots.txt").toString();
+        byte[] content = fetchFile(url);
+        if (content == null) {
+            return RobotsTxt.ALLOW_ALL;
+        }
+        return RobotsTxt.parse(new String(content, StandardCharsets.UTF_8), config.getRobotsProductToken());
+    }
+
+    /**
+     * @return page URLs of all read sitemaps in the order they are listed
+     */
+    public List<SitemapUrl> fetchSitemapUrls(String siteUrl, RobotsTxt robotsTxt) {
+        Deque<String> pending = new ArrayDeque<>(robotsTxt.getSitemaps());
+        if (pending.isEmpty()) {
+            pending.add(URI.create(siteUrl).resolve("/sitemap.xml").toString());
+        }
+        Set<String> seen = new HashSet<>(pending);
+        List<SitemapUrl> urls = new ArrayList<>();
+        int read = 0;
+        while (!pending.isEmpty() && read < config.getMaxSitemaps() && !Thread.currentThread().isInterrupted()) {
+            String sitemapUrl = pending.poll();
+            byte[] content = fetchFile(sitemapUrl);
+            read++;
+            if (content == null) {
+                continue;
+            }
+            try {
+                Sitemap sitemap = Sitemap.parse(sitemapUrl, content);
+                urls.addAll(sitemap.getUrls());
+                sitemap.getSitemaps().stream().filter(seen::add).forEach(pending::add);
+            } catch (WebParserException e) {
+                logger.warn(e.getMessage(), e.getCause());
+            }
+        }
+        if (!pending.isEmpty()) {
+            logger.info(siteUrl + ": " + pending.size() + " sitemaps left unread, maxSitemaps is "
+                    + config.getMaxSitemaps());
+        }
+        return urls;
+    }
+
+    private byte[] fetchFile(String url) {
+        try {
+            return pageFetcher.fetchFile(url).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            logger.warn(url + " -- Error occurred while fetching", e.getCause());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package searchengine.services.parsing;
+
+import lombok.Getter;
+import searchengine.exceptions.WebParserException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A parsed sitemap file: page URLs of a {@code urlset} or nested sitemaps of a {@code sitemapindex}.
+ * Gzipped files are recognized by their content, whatever the URL or content type says.
+ */
+@Getter
+public class Sitemap {
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newFactory();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final List<SitemapUrl> urls = new ArrayList<>();
+    private final List<String> sitemaps = new ArrayList<>();
+
+    public static Sitemap parse(String url, byte[] content) throws WebParserException {
+        Sitemap sitemap = new Sitemap();
+        try (InputStream input = isGzip(content) ? new GZIPInputStream(new ByteArrayInputStream(content))
+                : new ByteArrayInputStream(content)) {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+            String loc = null;
+            String lastmod = null;
+            StringBuilder text = new StringBuilder();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    text.setLength(0);
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    text.append(reader.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "loc":
+                            loc = text.toString().trim();
+                            break;
+                        case "lastmod":
+                            lastmod = text.toString().trim();
+                            break;
+                        case "url":
+                            if (loc != null && !loc.isEmpty()) {
+                                sitemap.urls.add(new SitemapUrl(loc, parseLastmod(lastmod)));
+                            }
+                            loc = null;
+                            lastmod = null;
+                            break;
+                        case "sitemap":
+                            if (loc != null && !loc.isEmpty()) {
+                                sitemap.sitemaps.add(loc);
+                            }
+                            loc = null;
+                            lastmod = null;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            reader.close();
+        } catch (IOException | XMLStreamException e) {
+            throw new WebParserException(url + " -- Error occurred while parsing sitemap", e);
+        }
+        return sitemap;
+    }
+
+    private static boolean isGzip(byte[] content) {
+        return content.length > 1 && (content[0] & 0xFF) == 0x1F && (content[1] & 0xFF) == 0x8B;
+    }
+
+    /**
+     * @return the W3C datetime as an instant, {@code null} if it is missing or malformed
+     */
+    private static Instant parseLastmod(String lastmod) {
+        if (lastmod == null || lastmod.isEmpty()) {
+            return null;
+        }
+        try {
+            return lastmod.length() == 10 ? LocalDate.parse(lastmod).atStartOfDay(ZoneOffset.UTC).toInstant()
+                    : OffsetDateTime.parse(lastmod).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package searchengine.services.parsing;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@AllArgsConstructor
+public class SitemapUrl {
+    private final String url;
+    /**
+     * Last modification announced by the sitemap, {@code null} when not given.
+     */
+    private final Instant lastModified;
+}
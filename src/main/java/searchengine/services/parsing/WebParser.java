@@ -1,206 +1,550 @@
 package searchengine.services.parsing;
 
-import java.io.IOException;
-
+import java.net.URI;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import lombok.Getter;
 import lombok.Setter;
-import lombok.SneakyThrows;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.tomcat.util.http.fileupload.impl.InvalidContentTypeException;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.config.ConfigurableBeanFactory;
-import org.springframework.context.annotation.Scope;
-import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import searchengine.config.Config;
 import searchengine.config.InitSiteList;
+import searchengine.dto.index.PageState;
 import searchengine.exceptions.WebParserException;
 import searchengine.model.Index;
 import searchengine.model.Lemma;
 import searchengine.model.Page;
 import searchengine.model.Site;
 import searchengine.repository.IndexRepository;
-import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
-import searchengine.util.ConcurrentHashSet;
+import searchengine.repository.batch.BatchWriter;
+import searchengine.services.searching.InvertedIndex;
+import searchengine.util.TokenPositions;
+import searchengine.util.VisitedSet;
 
-@Component
-@Scope(scopeName = ConfigurableBeanFactory.SCOPE_PROTOTYPE)
-public class WebParser extends RecursiveTask<Integer> {
+/**
+ * Crawls a single site. The frontier is seeded with the start page and the site's sitemaps, and
+ * links disallowed by its robots.txt are never queued. The calling thread starts asynchronous
+ * fetches of frontier links, and every fetched page becomes a task on the shared
+ * {@link CrawlScheduler}: Jsoup parse, link extraction and lemmatization, after which the page
+ * waits in a buffer until a full batch is written on the scheduler's persist pool. At most {@code maxInFlightFetches} pages are
+ * between fetch and write at once, so a slow database throttles fetching instead of buffering pages.
+ */
+public class WebParser {
+    public static final Logger logger = LogManager.getLogger(WebParser.class);
     private static final AtomicBoolean stop = new AtomicBoolean(false);
-    private static final int THRESHOLD = 100;
+    private static final long POLL_TIMEOUT_MS = 100;
     @Getter
     @Setter
     private Site site;
-    private final InitSiteList initSiteList;
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
+    private final LemmaDictionary lemmaDictionary;
+    private final BatchWriter batchWriter;
+    private final PageFetcher pageFetcher;
     private final Config config;
+    private final InvertedIndex invertedIndex;
+    private final CrawlMetrics crawlMetrics;
+    private final CrawlScheduler crawlScheduler;
+    private final SiteDiscovery siteDiscovery;
+    private final TransactionTemplate transactionTemplate;
+    private RobotsTxt robotsTxt = RobotsTxt.ALLOW_ALL;
+    private CrawlMetrics.SiteMetrics metrics;
     private Lemmatisator lemmatisator;
-    private Set<String> foundLinks;
-    private static ConcurrentHashSet<String> visitedLinks = new ConcurrentHashSet<>(10000, 0.75F, 16);
+    private final VisitedSet visitedLinks;
     private final List<String> toParseLinkList;
+    @Setter
+    private boolean resume;
+    @Setter
+    private boolean incremental;
+    private Map<String, PageState> storedPages = Collections.emptyMap();
+    private CrawlFrontier frontier;
+    private CrawlScheduler.SiteQueue tasks;
+    private Semaphore inFlight;
+    private final Queue<LemmatizedPage> bufferedPages = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bufferedCount = new AtomicInteger();
+    private final AtomicBoolean persistRequested = new AtomicBoolean();
+    private final AtomicInteger pendingLinks = new AtomicInteger();
+    private final AtomicInteger amount = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
     private static Pattern root;
     private static Pattern pageElement;
     private static Pattern contactLink;
-    private int amount;
-    private final Object lemmaLock = new Object();
-
-    @Autowired
-    public WebParser(InitSiteList initSiteList, PageRepository pageRepository, LemmaRepository lemmaRepository,
-                     IndexRepository indexRepository, Config config,
-                     Lemmatisator lemmatisator, List<String> toParseLinkList) {
-        this.initSiteList = initSiteList;
+
+    public WebParser(PageRepository pageRepository, IndexRepository indexRepository,
+                     LemmaDictionary lemmaDictionary, BatchWriter batchWriter, PageFetcher pageFetcher,
+                     Config config, Lemmatisator lemmatisator, InvertedIndex invertedIndex,
+                     CrawlMetrics crawlMetrics, CrawlScheduler crawlScheduler, SiteDiscovery siteDiscovery,
+                     TransactionTemplate transactionTemplate, VisitedSet visitedLinks,
+                     List<String> toParseLinkList) {
         this.pageRepository = pageRepository;
-        this.lemmaRepository = lemmaRepository;
         this.indexRepository = indexRepository;
+        this.lemmaDictionary = lemmaDictionary;
+        this.batchWriter = batchWriter;
+        this.pageFetcher = pageFetcher;
         this.config = config;
         this.lemmatisator = lemmatisator;
+        this.invertedIndex = invertedIndex;
+        this.crawlMetrics = crawlMetrics;
+        this.crawlScheduler = crawlScheduler;
+        this.siteDiscovery = siteDiscovery;
+        this.transactionTemplate = transactionTemplate;
+        this.visitedLinks = visitedLinks;
         this.toParseLinkList = toParseLinkList;
-        foundLinks = new HashSet<>();
-        amount = 0;
     }
 
-    @SneakyThrows
-    @Override
-    public Integer compute() {
-        List<Page> pagesToSave = new ArrayList<>();
-        for (String link : toParseLinkList) {
-            if (stop.get()) {
-                break;
-            }
-            if (visitedLinks.contains(link)) {
-                continue;
+    /**
+     * Crawls until the frontier is exhausted or crawling is stopped.
+     *
+     * @return number of persisted pages
+     */
+    public int crawl() {
+        metrics = crawlMetrics.forSite(site.getName());
+        tasks = crawlScheduler.queue(site.getUrl());
+        inFlight = new Semaphore(config.getMaxInFlightFetches());
+        lemmaDictionary.preload();
+        frontier = new CrawlFrontier(Paths.get(config.getFrontierDirectory()), site.getId());
+        if (incremental) {
+            loadStoredPages();
+        }
+        RobotsTxt siteRobotsTxt = config.isRespectRobotsTxt() || config.isUseSitemaps()
+                ? siteDiscovery.fetchRobotsTxt(site.getUrl()) : RobotsTxt.ALLOW_ALL;
+        if (config.isRespectRobotsTxt()) {
+            applyRobotsTxt(siteRobotsTxt);
+        }
+        if (resume) {
+            restoreFrontier();
+        } else {
+            frontier.delete();
+        }
+        toParseLinkList.forEach(link -> enqueueLink(link, 0));
+        if (config.isUseSitemaps()) {
+            enqueueSitemapUrls(siteDiscovery.fetchSitemapUrls(site.getUrl(), siteRobotsTxt));
+        }
+        storedPages.keySet().forEach(link -> enqueueLink(link, 1));
+        frontier.flush();
+        boolean completed = false;
+        try {
+            fetchLinks();
+            completed = !stop.get();
+        } finally {
+            if (completed) {
+                frontier.delete();
+            } else {
+                frontier.close();
             }
-            visitedLinks.add(link);
-            Map.Entry<String, Integer> htmlData = getHtmlAndCollectLinks(link);
-            if (htmlData == null) {
-                continue;
+            metrics.setFrontierSize(0);
+        }
+        if (incremental) {
+            logger.info(site.getName() + ": " + unchanged.get() + " pages unchanged");
+        }
+        return amount.get();
+    }
+
+    private void applyRobotsTxt(RobotsTxt siteRobotsTxt) {
+        robotsTxt = siteRobotsTxt;
+        Long crawlDelay = siteRobotsTxt.getCrawlDelay();
+        if (crawlDelay != null) {
+            long delay = Math.min(crawlDelay, config.getMaxCrawlDelay());
+            pageFetcher.setCrawlDelay(URI.create(site.getUrl()).getHost(), delay);
+            logger.info(site.getName() + ": crawl delay " + delay + " ms");
+        }
+    }
+
+    /**
+     * Queues sitemap URLs right behind the start page, most recently modified first. On an
+     * incremental crawl, stored pages whose sitemap lastmod is newer than their Last-Modified
+     * are queued along with the start page, so pages that changed are refreshed first.
+     */
+    private void enqueueSitemapUrls(List<SitemapUrl> sitemapUrls) {
+        List<SitemapUrl> sortedUrls = new ArrayList<>(sitemapUrls);
+        sortedUrls.sort(Comparator.comparing(SitemapUrl::getLastModified,
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        int queued = pendingLinks.get();
+        for (SitemapUrl sitemapUrl : sortedUrls) {
+            String link = cleanUrl(sitemapUrl.getUrl());
+            if (link.length() > 0 && isValidLink(link)) {
+                PageState previous = storedPages.get(link);
+                enqueueLink(link, previous != null && isModifiedSince(sitemapUrl, previous) ? 0 : 1);
             }
-            Page page = new Page(site, link, htmlData.getValue(), htmlData.getKey());
-            pagesToSave.add(page);
-            amount++;
         }
-        saveLemmasAndIndices(pagesToSave);
-        if (!foundLinks.isEmpty()) {
-            processFoundLinks();
+        logger.info(site.getName() + ": " + (pendingLinks.get() - queued) + " links queued from sitemaps");
+    }
+
+    private static boolean isModifiedSince(SitemapUrl sitemapUrl, PageState previous) {
+        if (sitemapUrl.getLastModified() == null) {
+            return false;
+        }
+        if (previous.getLastModified() == null) {
+            return true;
+        }
+        try {
+            Instant stored = ZonedDateTime.parse(previous.getLastModified(),
+                    DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return sitemapUrl.getLastModified().isAfter(stored);
+        } catch (DateTimeParseException e) {
+            return true;
         }
-        return amount;
     }
 
-    @Transactional
-    protected void saveLemmasAndIndices(List<Page> pagesToSave) {
-        Map<String, Lemma> uniqueLemmas = new HashMap<>();
-        List<Index> indicesToSave = new ArrayList<>();
-        for (Page page : pagesToSave) {
-            Map<String, Integer> lemmaRankMap = lemmatisator.collectLemmasAndRanks(page.getContent());
-            for (Map.Entry<String, Integer> entry : lemmaRankMap.entrySet()) {
-                if (stop.get()) {
-                    break;
+    /**
+     * Continues an interrupted crawl: stored pages and links the previous run discovered
+     * are treated as visited, and the links it had not processed are queued again.
+     */
+    private void restoreFrontier() {
+        Set<String> storedPaths = incremental ? storedPages.keySet()
+                : new HashSet<>(pageRepository.findAllPathsBySite(site));
+        visitedLinks.addAll(storedPaths);
+        // an incremental crawl revisits stored pages, so only the processed ones are skipped
+        visitedLinks.addAll(frontier.restore(incremental ? Collections.emptySet() : storedPaths));
+        metrics.setFrontierSize(pendingLinks.addAndGet(frontier.size()));
+    }
+
+    /**
+     * Picks up validators of stored pages. Every stored page is queued again and fetched
+     * conditionally, so pages the server reports as not modified cost no body transfer.
+     */
+    private void loadStoredPages() {
+        storedPages = new HashMap<>();
+        pageRepository.findAllStatesBySite(site).forEach(state -> storedPages.put(state.getPath(), state));
+    }
+
+    /**
+     * Starts asynchronous fetches of frontier links, nearest to the start page first, and hands
+     * every response to the scheduler. A page holds its {@code inFlight} permit until it is
+     * written, so buffered pages are flushed whenever fetching has to wait for a permit.
+     */
+    private void fetchLinks() {
+        int maxInFlight = config.getMaxInFlightFetches();
+        try {
+            while (!stop.get()) {
+                CrawlFrontier.Link link = frontier.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (link == null) {
+                    if (pendingLinks.get() == 0) {
+                        break;
+                    }
+                    requestFlush();
+                    continue;
+                }
+                while (!inFlight.tryAcquire(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    requestFlush();
                 }
-                int rank = entry.getValue();
-                Lemma lemma = addOrUpdateLemma(uniqueLemmas, entry.getKey());
-                Index index = new Index(lemma, page, rank);
-                indicesToSave.add(index);
+                String url = link.getUrl();
+                int depth = link.getDepth();
+                PageState previous = storedPages.get(url);
+                CompletableFuture<FetchResult> fetch = previous == null ? pageFetcher.fetch(url)
+                        : pageFetcher.fetch(url, previous.getEtag(), previous.getLastModified());
+                fetch.whenComplete((fetchResult, throwable) -> {
+                    if (throwable != null) {
+                        metrics.pagesFailed(1);
+                        frontier.markDone(url);
+                        pageDone();
+                    } else {
+                        tasks.submit(() -> processPage(fetchResult, previous, depth), depth);
+                    }
+                });
+            }
+            while (!inFlight.tryAcquire(maxInFlight, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                requestFlush();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        pageRepository.saveAll(pagesToSave);
-        synchronized (lemmaLock) {
-            lemmaRepository.saveAll(uniqueLemmas.values());
+    }
+
+    /**
+     * Parses and lemmatizes a fetched page, then buffers it for the next batch write.
+     */
+    private void processPage(FetchResult fetchResult, PageState previous, int depth) {
+        boolean buffered = false;
+        try {
+            if (stop.get()) {
+                return;
+            }
+            if (fetchResult.getBody() == null) {
+                if (fetchResult.isNotModified()) {
+                    unchanged.incrementAndGet();
+                    metrics.pageUnchanged();
+                }
+                frontier.markDone(fetchResult.getUrl());
+                return;
+            }
+            String contentHash = contentHash(fetchResult.getBody());
+            if (previous != null && contentHash.equals(previous.getContentHash())) {
+                unchanged.incrementAndGet();
+                metrics.pageUnchanged();
+                frontier.markDone(fetchResult.getUrl());
+                return;
+            }
+            Document document = fetchResult.parse();
+            collectLinks(document, depth + 1);
+            Page page = new Page(site, fetchResult.getUrl(), fetchResult.getCode(), document.html());
+            page.setEtag(fetchResult.getEtag());
+            page.setLastModified(fetchResult.getLastModified());
+            page.setContentHash(contentHash);
+            if (previous != null) {
+                page.setId(previous.getId());
+            }
+            LemmatizedPage lemmatizedPage;
+            long start = System.nanoTime();
+            try {
+                page.setText(document.text());
+                lemmatizedPage = new LemmatizedPage(page, lemmatisator.collectLemmaPositions(page.getText()),
+                        previous == null ? null : previous.getCode());
+                page.setTitle(PageTitles.extract(document, lemmatizedPage.getLemmaRanks()));
+            } catch (RuntimeException e) {
+                logger.error(fetchResult.getUrl() + " -- Error occurred while collecting lemmas", e);
+                metrics.pagesFailed(1);
+                // a resumed crawl would fail on it again
+                frontier.markDone(fetchResult.getUrl());
+                return;
+            }
+            metrics.recordLemmatization(System.nanoTime() - start);
+            bufferedPages.add(lemmatizedPage);
+            buffered = true;
+            if (bufferedCount.incrementAndGet() >= config.getBatchSize()) {
+                requestPersist(false);
+            }
+        } finally {
+            if (!buffered) {
+                pageDone();
+            }
         }
-        indexRepository.saveAll(indicesToSave);
     }
 
-    private Lemma addOrUpdateLemma(Map<String, Lemma> uniqueLemmas, String lemmaString) {
-        Lemma lemma = uniqueLemmas.get(lemmaString);
-        synchronized (lemmaLock) {
-            if (lemma == null) {
-                lemma = lemmaRepository.findLemmaByLemmaStringAndSite(lemmaString, site);
-                if (lemma != null) {
-                    lemma.setFrequency(lemma.getFrequency() + 1);
-                } else {
-                    lemma = new Lemma(site, lemmaString);
+    /**
+     * Writes buffered pages in batches.
+     *
+     * @param force also write a batch that is not full
+     */
+    private void persistBuffered(boolean force) {
+        int batchSize = config.getBatchSize();
+        while (bufferedCount.get() >= batchSize || force && bufferedCount.get() > 0) {
+            List<LemmatizedPage> batch = new ArrayList<>(batchSize);
+            try {
+                LemmatizedPage lemmatizedPage;
+                while (batch.size() < batchSize && (lemmatizedPage = bufferedPages.poll()) != null) {
+                    batch.add(lemmatizedPage);
                 }
-                uniqueLemmas.put(lemmaString, lemma);
-            } else {
-                Lemma lemmaFromRepo = lemmaRepository.findLemmaByLemmaStringAndSite(lemmaString, site);
-                if (lemmaFromRepo != null) {
-                    lemmaFromRepo.setFrequency(lemma.getFrequency() + lemmaFromRepo.getFrequency());
-                    lemma = lemmaFromRepo;
-                } else lemma.setFrequency(lemma.getFrequency() + 1);
+                bufferedCount.addAndGet(-batch.size());
+                if (!batch.isEmpty()) {
+                    saveBatch(batch);
+                }
+            } finally {
+                batch.forEach(lemmatizedPage -> pageDone());
             }
         }
-        return lemma;
     }
 
-    private void processFoundLinks() {
-        List<String> linksToProcess = new ArrayList<>(foundLinks);
-        for (int i = 0; i < linksToProcess.size(); i += THRESHOLD) {
-            if (stop.get()) {
-                break;
+    private void saveBatch(List<LemmatizedPage> batch) {
+        long start = System.nanoTime();
+        try {
+            saveLemmasAndIndices(batch);
+            amount.addAndGet(batch.size());
+            metrics.pagesStored(batch.size());
+        } catch (RuntimeException e) {
+            logger.error(site.getName() + " -- Error occurred while saving a batch of "
+                    + batch.size() + " pages", e);
+            metrics.pagesFailed(batch.size());
+        }
+        metrics.recordBatch(batch.size(), System.nanoTime() - start);
+    }
+
+    /**
+     * Queues a write of the buffered pages, also of a batch that is not full.
+     */
+    private void requestFlush() {
+        if (bufferedCount.get() > 0) {
+            requestPersist(true);
+        }
+    }
+
+    /**
+     * Queues a write of the buffered pages on the persist pool, unless one is queued already.
+     */
+    private void requestPersist(boolean force) {
+        if (persistRequested.compareAndSet(false, true)) {
+            crawlScheduler.persist(site.getUrl(), () -> {
+                persistRequested.set(false);
+                persistBuffered(force);
+            });
+        }
+    }
+
+    private void pageDone() {
+        inFlight.release();
+        metrics.setFrontierSize(pendingLinks.decrementAndGet());
+    }
+
+    /**
+     * Writes a batch with its lemma frequencies and index rows in one transaction. The in-memory
+     * index and the frontier change only once it commits, so a failed batch leaves no stored
+     * pages without index rows and is fetched again when the crawl is resumed.
+     */
+    private void saveLemmasAndIndices(List<LemmatizedPage> lemmatizedPagesToSave) {
+        List<Index> indicesToSave = new ArrayList<>();
+        List<Index> indicesToUpdate = new ArrayList<>();
+        List<Index> indicesToDelete = new ArrayList<>();
+        LemmaDictionary.Batch lemmaFrequencies = lemmaDictionary.newBatch();
+        // links found on the pages must be on disk before the pages are
+        frontier.sync();
+        transactionTemplate.executeWithoutResult(status -> writeBatch(lemmatizedPagesToSave, lemmaFrequencies,
+                indicesToSave, indicesToUpdate, indicesToDelete));
+        lemmaFrequencies.commit();
+        lemmatizedPagesToSave.forEach(lemmatizedPage -> invertedIndex.addPage(site.getId(),
+                lemmatizedPage.getPreviousCode(), lemmatizedPage.getPage().getCode()));
+        lemmatizedPagesToSave.forEach(lemmatizedPage -> invertedIndex.setPageLength(site.getId(),
+                lemmatizedPage.getPage().getId(), lemmatizedPage.getWordCount()));
+        indicesToDelete.forEach(index -> invertedIndex.removePosting(site.getId(), index.getLemma().getId(),
+                index.getPage().getId()));
+        indicesToSave.forEach(this::addPosting);
+        indicesToUpdate.forEach(this::addPosting);
+        lemmatizedPagesToSave.forEach(lemmatizedPage -> frontier.markDone(lemmatizedPage.getPage().getPath()));
+    }
+
+    /**
+     * Writes pages, lemma frequencies and index rows of a batch. Runs in the caller's transaction.
+     */
+    private void writeBatch(List<LemmatizedPage> lemmatizedPagesToSave, LemmaDictionary.Batch lemmaFrequencies,
+                            List<Index> indicesToSave, List<Index> indicesToUpdate, List<Index> indicesToDelete) {
+        List<LemmatizedPage> newPages = new ArrayList<>();
+        List<LemmatizedPage> changedPages = new ArrayList<>();
+        lemmatizedPagesToSave.forEach(lemmatizedPage ->
+                (lemmatizedPage.isChanged() ? changedPages : newPages).add(lemmatizedPage));
+        List<Page> pagesToSave = new ArrayList<>();
+        newPages.forEach(lemmatizedPage -> pagesToSave.add(lemmatizedPage.getPage()));
+        List<Page> pagesToUpdate = new ArrayList<>();
+        changedPages.forEach(lemmatizedPage -> pagesToUpdate.add(lemmatizedPage.getPage()));
+        batchWriter.savePages(pagesToSave);
+        batchWriter.updatePages(pagesToUpdate);
+        for (LemmatizedPage lemmatizedPage : newPages) {
+            lemmatizedPage.getLemmaRanks().keySet().forEach(lemmaFrequencies::count);
+        }
+        List<Map.Entry<Page, Map<String, int[]>>> addedPositions = new ArrayList<>();
+        for (LemmatizedPage lemmatizedPage : changedPages) {
+            addedPositions.add(new AbstractMap.SimpleEntry<>(lemmatizedPage.getPage(),
+                    diffPositions(lemmatizedPage, lemmaFrequencies, indicesToUpdate, indicesToDelete)));
+        }
+        for (LemmatizedPage lemmatizedPage : newPages) {
+            addedPositions.add(new AbstractMap.SimpleEntry<>(lemmatizedPage.getPage(),
+                    lemmatizedPage.getLemmaPositions()));
+        }
+        lemmaFrequencies.flush();
+        for (Map.Entry<Page, Map<String, int[]>> pagePositions : addedPositions) {
+            for (Map.Entry<String, int[]> entry : pagePositions.getValue().entrySet()) {
+                Lemma lemma = lemmaFrequencies.get(entry.getKey());
+                indicesToSave.add(new Index(lemma, pagePositions.getKey(), entry.getValue()));
             }
-            int end = Math.min(linksToProcess.size(), i + THRESHOLD);
-            List<String> subList = linksToProcess.subList(i, end);
-            WebParser task = new WebParser(initSiteList, pageRepository, lemmaRepository, indexRepository,
-                    config, lemmatisator, subList);
-            task.setSite(site);
-            task.fork();
-            amount += task.join();
         }
+        batchWriter.saveIndices(indicesToSave);
+        batchWriter.updateIndices(indicesToUpdate);
+        batchWriter.deleteIndices(indicesToDelete);
     }
 
-    private Map.Entry<Document, Integer> getPageDocumentView(String url) throws WebParserException {
-        Connection.Response response;
-        Document document;
+    /**
+     * Compares new lemma positions of a changed page with its stored index rows. Rows whose rank
+     * or positions changed are updated in place, rows of vanished lemmas are deleted and lemma
+     * frequencies are adjusted only for lemmas that appeared or vanished.
+     *
+     * @return positions of lemmas the page did not contain before
+     */
+    private Map<String, int[]> diffPositions(LemmatizedPage lemmatizedPage, LemmaDictionary.Batch lemmaFrequencies,
+                                             List<Index> indicesToUpdate, List<Index> indicesToDelete) {
+        Page page = lemmatizedPage.getPage();
+        Map<String, int[]> addedPositions = new HashMap<>(lemmatizedPage.getLemmaPositions());
+        for (Index index : indexRepository.findAllByPageIdWithLemmas(site.getId(), page.getId())) {
+            index.setPage(page);
+            String lemmaString = index.getLemma().getLemmaString();
+            int[] positions = addedPositions.remove(lemmaString);
+            if (positions == null) {
+                lemmaFrequencies.uncount(lemmaString);
+                indicesToDelete.add(index);
+                continue;
+            }
+            byte[] encodedPositions = TokenPositions.encode(positions);
+            boolean changed = Math.min(positions.length, Index.MAX_RANK) != index.getRank()
+                    || !Arrays.equals(encodedPositions, index.getPositions());
+            if (changed) {
+                index.setRank(positions.length);
+                index.setPositions(encodedPositions);
+                indicesToUpdate.add(index);
+            }
+        }
+        addedPositions.keySet().forEach(lemmaFrequencies::count);
+        return addedPositions;
+    }
+
+    private void addPosting(Index index) {
+        invertedIndex.addPosting(site.getId(), index.getLemma().getId(), index.getLemma().getLemmaString(),
+                index.getPage().getId(), index.getRank());
+    }
+
+    private static String contentHash(byte[] body) {
         try {
-            response = Jsoup.connect(url)
-                    .ignoreHttpErrors(true)
-                    .userAgent(config.getUserAgent())
-                    .referrer(config.getReferrer())
-                    .execute();
-            String contentType = response.contentType();
-            if (contentType != null && (contentType.matches("^(?:application|image|audio|video)"))) {
-                throw new WebParserException("URL is a FILE", new InvalidContentTypeException());
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
             }
-            document = response.parse();
-        } catch (IOException e) {
-            throw new WebParserException(url + " -- Error occurred while trying to establish connection, " +
-                    "parse HTML and collect links", e);
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private void enqueueLink(String link, int depth) {
+        if (robotsTxt.isAllowed(link) && visitedLinks.add(link)) {
+            metrics.setFrontierSize(pendingLinks.incrementAndGet());
+            frontier.add(link, depth);
         }
-        return new AbstractMap.SimpleEntry<>(document, response.statusCode());
     }
 
-    private Map.Entry<String, Integer> getHtmlAndCollectLinks(String url) {
-        Map.Entry<Document, Integer> documentPageView = null;
+    private FetchResult fetchHtml(String url) throws WebParserException {
+        FetchResult fetchResult;
         try {
-            documentPageView = getPageDocumentView(url);
-        } catch (WebParserException e) {
-            return null;
+            fetchResult = pageFetcher.fetch(url).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebParserException(url + " -- Fetching was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new WebParserException(url + " -- Error occurred while trying to establish connection, " +
+                    "parse HTML and collect links", e.getCause());
         }
-        Elements linkElements = documentPageView.getKey().select("a[href], link[href]");
+        if (fetchResult.getBody() == null) {
+            throw new WebParserException("URL is a FILE", new InvalidContentTypeException());
+        }
+        return fetchResult;
+    }
+
+    private void collectLinks(Document document, int depth) {
+        Elements linkElements = document.select("a[href]");
         for (Element linkElement : linkElements) {
             String absUrl = cleanUrl(linkElement.attr("abs:href"));
             if (absUrl.length() > 0 && isValidLink(absUrl)) {
-                foundLinks.add(absUrl);
+                enqueueLink(absUrl, depth);
             }
         }
-        String textHtml = documentPageView.getKey().html();
-        int code = documentPageView.getValue();
-        return new AbstractMap.SimpleEntry<>(textHtml, code);
+        frontier.flush();
     }
 
 
@@ -221,30 +565,46 @@ public class WebParser extends RecursiveTask<Integer> {
                 root.matcher(link.replaceAll("/w{3}\\.", "/")).lookingAt();
     }
 
-    public Map.Entry<Page, Boolean> addPage(String url) {
-        boolean newPage = false;
-        Map.Entry<String, Integer> html = getHtmlAndCollectLinks(url);
-        if (html == null) {
+    /**
+     * Fetches and lemmatizes a single page. The page is not saved; the caller stores it together
+     * with its index rows.
+     *
+     * @return the page with its lemma ranks, marked as changed if it was already stored,
+     * or {@code null} if the page cannot be fetched
+     */
+    public LemmatizedPage fetchPage(String url) {
+        FetchResult fetchResult;
+        try {
+            fetchResult = fetchHtml(url);
+        } catch (WebParserException e) {
             return null;
         }
-        int statusCode = html.getValue();
-        String content = html.getKey();
+        int statusCode = fetchResult.getCode();
+        Document document = fetchResult.parse();
+        String text = document.text();
 
-        Page page = pageRepository.findByPath(url);
+        Page page = pageRepository.findBySiteAndPath(site, cleanUrl(url));
+        Integer previousCode = null;
         if (page == null) {
             page = new Page();
-            newPage = true;
+        } else {
+            previousCode = page.getCode();
         }
+        LemmatizedPage lemmatizedPage = new LemmatizedPage(page, lemmatisator.collectLemmaPositions(text),
+                previousCode);
         page.setCode(statusCode);
         page.setPath(cleanUrl(url));
-        page.setContent(content);
+        page.setContent(document.html());
+        page.setTitle(PageTitles.extract(document, lemmatizedPage.getLemmaRanks()));
+        page.setText(text);
+        page.setEtag(fetchResult.getEtag());
+        page.setLastModified(fetchResult.getLastModified());
+        page.setContentHash(contentHash(fetchResult.getBody()));
         page.setSite(site);
-
-        pageRepository.save(page);
-        return new AbstractMap.SimpleEntry<>(page, newPage);
+        return lemmatizedPage;
     }
 
-    public String cleanUrl(String url) {
+    public static String cleanUrl(String url) {
         String cleanUrl = url;
         if (url.contains("?")) {
             cleanUrl = url.substring(0, url.indexOf("?"));
@@ -263,8 +623,4 @@ public class WebParser extends RecursiveTask<Integer> {
     public static boolean stopped() {
         return stop.get();
     }
-
-    public static void clearVisitedLinks() {
-        visitedLinks.clear();
-    }
-}
\ No newline at end of file
+}
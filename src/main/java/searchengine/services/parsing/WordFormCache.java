@@ -0,0 +1,71 @@
+package searchengine.services.parsing;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Bounded word form to lemma cache shared by all lemmatizing threads. Entries live in two
+ * generations: lookups go to the young one first and promote hits from the old one; once the
+ * young generation is full it becomes the old one and the previous old generation is dropped.
+ * This keeps frequent word forms cached without per-entry bookkeeping or locks on reads.
+ */
+public class WordFormCache {
+
+    /**
+     * Cached value of a word form that has no lemma: a stop word or a word unknown to the dictionaries.
+     */
+    private static final String NO_LEMMA = "";
+
+    private final int generationSize;
+    private volatile Map<String, String> young;
+    private volatile Map<String, String> old;
+
+    public WordFormCache(int capacity) {
+        this.generationSize = Math.max(capacity / 2, 0);
+        this.young = new ConcurrentHashMap<>();
+        this.old = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the lemma of the word form, or {@code null} if it has none, calling
+     * {@code lemmatizer} only for word forms not cached yet.
+     */
+    public String get(String wordForm, Function<String, String> lemmatizer) {
+        if (generationSize == 0) {
+            return lemmatizer.apply(wordForm);
+        }
+        String lemma = young.get(wordForm);
+        if (lemma == null) {
+            lemma = old.get(wordForm);
+            if (lemma == null) {
+                lemma = lemmatizer.apply(wordForm);
+                if (lemma == null) {
+                    lemma = NO_LEMMA;
+                }
+            }
+            put(wordForm, lemma);
+        }
+        return lemma.isEmpty() ? null : lemma;
+    }
+
+    public void clear() {
+        synchronized (this) {
+            old = new ConcurrentHashMap<>();
+            young = new ConcurrentHashMap<>();
+        }
+    }
+
+    private void put(String wordForm, String lemma) {
+        Map<String, String> generation = young;
+        generation.put(wordForm, lemma);
+        if (generation.size() >= generationSize) {
+            synchronized (this) {
+                if (young == generation) {
+                    old = generation;
+                    young = new ConcurrentHashMap<>();
+                }
+            }
+        }
+    }
+}
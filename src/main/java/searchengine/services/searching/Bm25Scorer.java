@@ -0,0 +1,23 @@
+package searchengine.services.searching;
+
+/**
+ * Okapi BM25: occurrences saturate with {@code k1} and are normalized by page length with {@code b},
+ * and rare lemmas weigh more than frequent ones.
+ */
+public class Bm25Scorer implements RelevanceScorer {
+
+    private final float k1;
+    private final float b;
+
+    public Bm25Scorer(float k1, float b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    @Override
+    public float score(int rank, int documentFrequency, int pageLength, int pageCount, float averagePageLength) {
+        double idf = Math.log(1 + (pageCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        double relativeLength = averagePageLength > 0 ? pageLength / averagePageLength : 1;
+        return (float) (idf * rank * (k1 + 1) / (rank + k1 * (1 - b + b * relativeLength)));
+    }
+}
@@ -0,0 +1,251 @@
+package searchengine.services.searching;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.index.IndexEntry;
+import searchengine.model.Site;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Resident copy of the {@code index} table: lemma id -> compressed postings, grouped by site.
+ * Built once from the database when the application is ready and kept in sync by the indexer,
+ * so search can match and score pages without querying lemmas and index rows.
+ */
+@Component
+public class InvertedIndex {
+    public static final Logger logger = LogManager.getLogger(InvertedIndex.class);
+
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final IndexRepository indexRepository;
+    private final SearchCache searchCache;
+    private final Map<Long, SiteIndex> sites = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+
+    @Autowired
+    public InvertedIndex(SiteRepository siteRepository, PageRepository pageRepository,
+                         IndexRepository indexRepository, SearchCache searchCache) {
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.indexRepository = indexRepository;
+        this.searchCache = searchCache;
+    }
+
+    /**
+     * Loads the serving generation of every site. Generations left by an interrupted re-index
+     * are not searched, so they stay out of memory until a resumed crawl loads them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void load() {
+        long start = System.currentTimeMillis();
+        sites.clear();
+        long postings = 0;
+        for (Site site : siteRepository.findAllByServingTrue()) {
+            postings += loadSite(site);
+        }
+        ready = true;
+        // rankings cached until now were summed from the database, not scored by the configured scorer
+        searchCache.invalidateAll();
+        logger.info(MessageFormat.format("Inverted index loaded: {0} postings in {1} ms",
+                postings, System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Loads a generation that was not loaded at startup, before a resumed crawl continues it.
+     */
+    @Transactional(readOnly = true)
+    public synchronized void loadGeneration(Site site) {
+        long start = System.currentTimeMillis();
+        sites.remove(site.getId());
+        long postings = loadSite(site);
+        logger.info(MessageFormat.format("{0}: generation {1} loaded, {2} postings in {3} ms", site.getName(),
+                String.valueOf(site.getId()), postings, System.currentTimeMillis() - start));
+    }
+
+    private long loadSite(Site site) {
+        long siteId = site.getId();
+        getOrCreateSite(siteId).pageCount.set(pageRepository.countBySiteAndCode(site, 200).intValue());
+        AtomicLong postings = new AtomicLong();
+        try (Stream<IndexEntry> entries = indexRepository.streamAllEntriesBySiteId(siteId)) {
+            entries.forEach(entry -> {
+                int rank = entry.getRank();
+                addPosting(siteId, entry.getLemmaId(), entry.getLemma(), entry.getPageId(), rank);
+                getOrCreateSite(siteId).addWords(entry.getPageId(), rank);
+                postings.incrementAndGet();
+            });
+        }
+        return postings.get();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void addPosting(long siteId, long lemmaId, String lemma, long pageId, int rank) {
+        SiteIndex siteIndex = getOrCreateSite(siteId);
+        siteIndex.lemmaIds.putIfAbsent(lemma, lemmaId);
+        siteIndex.postings.computeIfAbsent(lemmaId, id -> new PostingList()).add(pageId, rank);
+    }
+
+    /**
+     * Counts a new or re-indexed page under its HTTP code; only pages answered with 200 are counted.
+     *
+     * @param previousCode code a re-indexed page was stored with, {@code null} for a new page
+     */
+    public void addPage(long siteId, Integer previousCode, int code) {
+        int delta = (code == 200 ? 1 : 0) - (previousCode != null && previousCode == 200 ? 1 : 0);
+        if (delta != 0) {
+            getOrCreateSite(siteId).pageCount.addAndGet(delta);
+        }
+    }
+
+    /**
+     * Sets the number of lemmatized words of a new or re-indexed page.
+     */
+    public void setPageLength(long siteId, long pageId, int wordCount) {
+        getOrCreateSite(siteId).setWords(pageId, wordCount);
+    }
+
+    /**
+     * Drops the postings of a page before it is re-indexed.
+     *
+     * @param lemmaIds the lemmas the page was indexed with, as stored in its index rows
+     */
+    public void removePage(long siteId, long pageId, Collection<Long> lemmaIds) {
+        SiteIndex siteIndex = sites.get(siteId);
+        if (siteIndex != null) {
+            lemmaIds.forEach(lemmaId -> removePosting(siteId, lemmaId, pageId));
+            siteIndex.setWords(pageId, 0);
+        }
+    }
+
+    public void removePosting(long siteId, long lemmaId, long pageId) {
+        SiteIndex siteIndex = sites.get(siteId);
+        if (siteIndex == null) {
+            return;
+        }
+        PostingList postingList = siteIndex.postings.get(lemmaId);
+        if (postingList != null) {
+            postingList.remove(pageId);
+        }
+    }
+
+    public synchronized void clear() {
+        sites.clear();
+    }
+
+    public void removeSite(long siteId) {
+        sites.remove(siteId);
+    }
+
+    public int getPageCount(long siteId) {
+        SiteIndex siteIndex = sites.get(siteId);
+        return siteIndex == null ? 0 : siteIndex.pageCount.get();
+    }
+
+    public PostingList getPostings(long siteId, String lemma) {
+        SiteIndex siteIndex = sites.get(siteId);
+        if (siteIndex == null) {
+            return null;
+        }
+        Long lemmaId = siteIndex.lemmaIds.get(lemma);
+        return lemmaId == null ? null : siteIndex.postings.get(lemmaId);
+    }
+
+    /**
+     * Intersects postings starting from the shortest list and sums the scores of every lemma
+     * for the pages that contain all of them.
+     */
+    public ScoredPages intersect(long siteId, List<PostingList> postingLists, RelevanceScorer scorer) {
+        SiteIndex siteIndex = sites.get(siteId);
+        if (postingLists.isEmpty() || siteIndex == null) {
+            return ScoredPages.EMPTY;
+        }
+        List<PostingList.Cursor> cursors = new ArrayList<>();
+        postingLists.forEach(postingList -> cursors.add(postingList.cursor()));
+        cursors.sort(Comparator.comparingInt(PostingList.Cursor::size));
+        int pageCount = siteIndex.pageCount.get();
+        float averagePageLength = siteIndex.averageWords();
+
+        PostingList.Cursor first = cursors.get(0);
+        long[] pageIds = new long[first.size()];
+        int[] pageLengths = new int[first.size()];
+        float[] scores = new float[first.size()];
+        int size = 0;
+        while (first.next()) {
+            pageIds[size] = first.pageId();
+            pageLengths[size] = siteIndex.words(first.pageId());
+            scores[size] = scorer.score(first.rank(), first.size(), pageLengths[size], pageCount, averagePageLength);
+            size++;
+        }
+        for (int c = 1; c < cursors.size() && size > 0; c++) {
+            PostingList.Cursor cursor = cursors.get(c);
+            int kept = 0;
+            boolean exhausted = !cursor.next();
+            for (int i = 0; i < size && !exhausted; i++) {
+                if (cursor.pageId() < pageIds[i]) {
+                    exhausted = !cursor.advanceTo(pageIds[i]);
+                }
+                if (!exhausted && cursor.pageId() == pageIds[i]) {
+                    pageIds[kept] = pageIds[i];
+                    pageLengths[kept] = pageLengths[i];
+                    scores[kept] = scores[i] + scorer.score(cursor.rank(), cursor.size(), pageLengths[i],
+                            pageCount, averagePageLength);
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+        return size == 0 ? ScoredPages.EMPTY : new ScoredPages(pageIds, scores, size);
+    }
+
+    private SiteIndex getOrCreateSite(long siteId) {
+        return sites.computeIfAbsent(siteId, id -> new SiteIndex());
+    }
+
+    private static class SiteIndex {
+        private final Map<String, Long> lemmaIds = new ConcurrentHashMap<>();
+        private final Map<Long, PostingList> postings = new ConcurrentHashMap<>();
+        private final AtomicInteger pageCount = new AtomicInteger();
+        private final Map<Long, Integer> pageWords = new ConcurrentHashMap<>();
+        private final AtomicLong totalWords = new AtomicLong();
+
+        private int words(long pageId) {
+            return pageWords.getOrDefault(pageId, 0);
+        }
+
+        private void addWords(long pageId, int words) {
+            pageWords.merge(pageId, words, Integer::sum);
+            totalWords.addAndGet(words);
+        }
+
+        private void setWords(long pageId, int words) {
+            Integer previous = words == 0 ? pageWords.remove(pageId) : pageWords.put(pageId, words);
+            totalWords.addAndGet(words - (previous == null ? 0 : previous));
+        }
+
+        private float averageWords() {
+            int pages = pageWords.size();
+            return pages == 0 ? 0 : (float) totalWords.get() / pages;
+        }
+    }
+}
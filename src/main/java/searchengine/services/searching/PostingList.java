@@ -0,0 +1,237 @@
+package searchengine.services.searching;
+
+import java.util.Arrays;
+
+/**
+ * Page postings of a single lemma: page ids in ascending order together with ranks.
+ * Ids are stored as varint-encoded deltas followed by the varint-encoded rank, so a posting
+ * usually takes 2-3 bytes instead of the 24+ bytes of an {@code Index} entity.
+ * <p>
+ * Postings arriving in order are appended in place. Out-of-order postings (pages saved by
+ * concurrent batches) are buffered and merged into the encoded block on the next read.
+ * Readers work on a {@link Cursor} over a snapshot, so searching never blocks the indexer
+ * for longer than taking the snapshot.
+ */
+public class PostingList {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] data = EMPTY;
+    private int length;
+    private int size;
+    private long lastPageId;
+
+    private long[] pendingPageIds = new long[0];
+    private int[] pendingRanks = new int[0];
+    private int pendingSize;
+
+    public synchronized void add(long pageId, int rank) {
+        if (pendingSize == 0 && (size == 0 || pageId > lastPageId)) {
+            append(pageId, rank);
+            return;
+        }
+        if (pendingSize == pendingPageIds.length) {
+            int capacity = Math.max(8, pendingSize * 2);
+            pendingPageIds = Arrays.copyOf(pendingPageIds, capacity);
+            pendingRanks = Arrays.copyOf(pendingRanks, capacity);
+        }
+        pendingPageIds[pendingSize] = pageId;
+        pendingRanks[pendingSize] = rank;
+        pendingSize++;
+    }
+
+    public synchronized boolean remove(long pageId) {
+        if (!contains(pageId)) {
+            return false;
+        }
+        merge();
+        Cursor cursor = new Cursor(data, length, size);
+        long[] pageIds = new long[size];
+        int[] ranks = new int[size];
+        int count = 0;
+        boolean removed = false;
+        while (cursor.next()) {
+            if (cursor.pageId() == pageId) {
+                removed = true;
+                continue;
+            }
+            pageIds[count] = cursor.pageId();
+            ranks[count] = cursor.rank();
+            count++;
+        }
+        if (removed) {
+            encode(pageIds, ranks, count);
+        }
+        return removed;
+    }
+
+    public synchronized int size() {
+        merge();
+        return size;
+    }
+
+    public synchronized Cursor cursor() {
+        merge();
+        return new Cursor(data, length, size);
+    }
+
+    /**
+     * Looks a page up without decoding the list: scans the pending buffer, then the encoded
+     * block up to the first larger page id.
+     */
+    private boolean contains(long pageId) {
+        for (int i = 0; i < pendingSize; i++) {
+            if (pendingPageIds[i] == pageId) {
+                return true;
+            }
+        }
+        if (size == 0 || pageId > lastPageId) {
+            return false;
+        }
+        Cursor cursor = new Cursor(data, length, size);
+        return cursor.advanceTo(pageId) && cursor.pageId() == pageId;
+    }
+
+    private void append(long pageId, int rank) {
+        ensureCapacity(length + 15);
+        length = writeVarLong(data, length, size == 0 ? pageId : pageId - lastPageId);
+        length = writeVarLong(data, length, rank);
+        lastPageId = pageId;
+        size++;
+    }
+
+    private void merge() {
+        if (pendingSize == 0) {
+            return;
+        }
+        int total = size + pendingSize;
+        long[] pageIds = new long[total];
+        int[] ranks = new int[total];
+        Cursor cursor = new Cursor(data, length, size);
+        int count = 0;
+        while (cursor.next()) {
+            pageIds[count] = cursor.pageId();
+            ranks[count] = cursor.rank();
+            count++;
+        }
+        System.arraycopy(pendingPageIds, 0, pageIds, count, pendingSize);
+        System.arraycopy(pendingRanks, 0, ranks, count, pendingSize);
+        sortByPageId(pageIds, ranks, total);
+        count = 0;
+        for (int i = 0; i < total; i++) {
+            if (count > 0 && pageIds[count - 1] == pageIds[i]) {
+                ranks[count - 1] = ranks[i];
+                continue;
+            }
+            pageIds[count] = pageIds[i];
+            ranks[count] = ranks[i];
+            count++;
+        }
+        pendingSize = 0;
+        encode(pageIds, ranks, count);
+    }
+
+    private void encode(long[] pageIds, int[] ranks, int count) {
+        data = new byte[Math.max(16, count * 4)];
+        length = 0;
+        size = 0;
+        lastPageId = 0;
+        for (int i = 0; i < count; i++) {
+            append(pageIds[i], ranks[i]);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length + (data.length >> 1)));
+        }
+    }
+
+    /**
+     * Stable sort keeping the latest rank for a page id last, so the merge keeps it.
+     */
+    private static void sortByPageId(long[] pageIds, int[] ranks, int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(pageIds[a], pageIds[b]));
+        long[] sortedIds = new long[count];
+        int[] sortedRanks = new int[count];
+        for (int i = 0; i < count; i++) {
+            sortedIds[i] = pageIds[order[i]];
+            sortedRanks[i] = ranks[order[i]];
+        }
+        System.arraycopy(sortedIds, 0, pageIds, 0, count);
+        System.arraycopy(sortedRanks, 0, ranks, 0, count);
+    }
+
+    private static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    public static final class Cursor {
+        private final byte[] data;
+        private final int length;
+        private final int size;
+        private int position;
+        private long pageId;
+        private int rank;
+
+        private Cursor(byte[] data, int length, int size) {
+            this.data = data;
+            this.length = length;
+            this.size = size;
+        }
+
+        public boolean next() {
+            if (position >= length) {
+                return false;
+            }
+            pageId += readVarLong();
+            rank = (int) readVarLong();
+            return true;
+        }
+
+        /**
+         * Moves to the first posting with a page id not less than the given one.
+         */
+        public boolean advanceTo(long target) {
+            while (next()) {
+                if (pageId >= target) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public long pageId() {
+            return pageId;
+        }
+
+        public int rank() {
+            return rank;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+}
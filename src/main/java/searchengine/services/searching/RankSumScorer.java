@@ -0,0 +1,12 @@
+package searchengine.services.searching;
+
+/**
+ * Relevance as the plain number of query lemma occurrences on the page.
+ */
+public class RankSumScorer implements RelevanceScorer {
+
+    @Override
+    public float score(int rank, int documentFrequency, int pageLength, int pageCount, float averagePageLength) {
+        return rank;
+    }
+}
@@ -0,0 +1,18 @@
+package searchengine.services.searching;
+
+/**
+ * Relevance of a page to a query, computed as the sum of the contributions of every query lemma.
+ * All arguments come from the inverted index, so scoring costs nothing beyond walking the postings.
+ */
+public interface RelevanceScorer {
+
+    /**
+     * @param rank              occurrences of the lemma on the page
+     * @param documentFrequency pages of the site that contain the lemma
+     * @param pageLength        lemmatized words on the page
+     * @param pageCount         pages of the site
+     * @param averagePageLength lemmatized words per page of the site on average
+     * @return contribution of the lemma to the relevance of the page
+     */
+    float score(int rank, int documentFrequency, int pageLength, int pageCount, float averagePageLength);
+}
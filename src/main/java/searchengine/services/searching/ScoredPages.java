@@ -0,0 +1,34 @@
+package searchengine.services.searching;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ScoredPages {
+
+    public static final ScoredPages EMPTY = new ScoredPages(new long[0], new float[0], 0);
+
+    private final long[] pageIds;
+    private final float[] scores;
+    private final int size;
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the same pages with scores divided by the maximum one.
+     */
+    public ScoredPages normalized() {
+        float maxScore = 0;
+        for (int i = 0; i < size; i++) {
+            maxScore = Math.max(maxScore, scores[i]);
+        }
+        float[] normalizedScores = new float[size];
+        for (int i = 0; i < size; i++) {
+            normalizedScores[i] = maxScore != 0 ? scores[i] / maxScore : 0;
+        }
+        return new ScoredPages(pageIds, normalizedScores, size);
+    }
+}
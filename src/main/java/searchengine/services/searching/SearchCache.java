@@ -0,0 +1,141 @@
+package searchengine.services.searching;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import searchengine.config.Config;
+import searchengine.dto.statistics.SearchCacheStatistics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of scored pages per site and query lemma set. Every site has an index
+ * version that is bumped when the site is re-indexed; an invalidation drops the cached rankings
+ * of the site, and a ranking computed against an older version is never stored.
+ */
+@Component
+public class SearchCache {
+
+    private final int capacity;
+    private final Map<Key, CachedRanking> entries;
+    private final Map<Long, AtomicLong> siteVersions = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Autowired
+    public SearchCache(Config config) {
+        this.capacity = config.getSearchCacheSize();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedRanking> eldest) {
+                if (size() > capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached scored pages of the lemma set on the site, computing and caching it on a miss.
+     * Concurrent misses of the same key are computed independently.
+     */
+    public ScoredPages get(long siteId, List<String> lemmas, Supplier<ScoredPages> ranking) {
+        if (capacity <= 0) {
+            return ranking.get();
+        }
+        Key key = new Key(siteId, String.join(" ", new TreeSet<>(lemmas)));
+        long version = version(siteId).get();
+        synchronized (entries) {
+            CachedRanking cached = entries.get(key);
+            if (cached != null && cached.version == version) {
+                hits.increment();
+                return cached.pages;
+            }
+        }
+        misses.increment();
+        ScoredPages pages = ranking.get();
+        synchronized (entries) {
+            if (version(siteId).get() == version) {
+                entries.put(key, new CachedRanking(pages, version));
+            }
+        }
+        return pages;
+    }
+
+    public void invalidate(long siteId) {
+        version(siteId).incrementAndGet();
+        invalidations.increment();
+        synchronized (entries) {
+            for (Iterator<Key> iterator = entries.keySet().iterator(); iterator.hasNext(); ) {
+                if (iterator.next().siteId == siteId) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        siteVersions.values().forEach(AtomicLong::incrementAndGet);
+        invalidations.increment();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public SearchCacheStatistics getStatistics() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new SearchCacheStatistics(size, capacity, hits.sum(), misses.sum(), evictions.sum(),
+                invalidations.sum());
+    }
+
+    private AtomicLong version(long siteId) {
+        return siteVersions.computeIfAbsent(siteId, id -> new AtomicLong());
+    }
+
+    private static final class Key {
+        private final long siteId;
+        private final String lemmas;
+
+        private Key(long siteId, String lemmas) {
+            this.siteId = siteId;
+            this.lemmas = lemmas;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return siteId == key.siteId && lemmas.equals(key.lemmas);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(siteId) + lemmas.hashCode();
+        }
+    }
+
+    private static final class CachedRanking {
+        private final ScoredPages pages;
+        private final long version;
+
+        private CachedRanking(ScoredPages pages, long version) {
+            this.pages = pages;
+            this.version = version;
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package searchengine.services.searching;
 
-import org.htmlcleaner.HtmlCleaner;
-import org.htmlcleaner.TagNode;
-import org.htmlcleaner.XPatherException;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import searchengine.config.Config;
+import searchengine.dto.search.LemmaPositions;
+import searchengine.dto.search.PageRelevance;
+import searchengine.dto.search.PageSummary;
 import searchengine.dto.search.Search;
 import searchengine.dto.search.SearchResult;
 import searchengine.model.*;
@@ -15,57 +19,184 @@ import searchengine.repository.LemmaRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 import searchengine.services.parsing.Lemmatisator;
+import searchengine.services.parsing.PageTitles;
+import searchengine.util.TokenPositions;
 
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public final class SearchEngine {
+    public static final Logger logger = LogManager.getLogger(SearchEngine.class);
 
     private final Lemmatisator lemmatisator;
     private final IndexRepository indexRepository;
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
     private final LemmaRepository lemmaRepository;
-    private static final HtmlCleaner cleaner = new HtmlCleaner();
+    private final InvertedIndex invertedIndex;
+    private final SearchCache searchCache;
+    private final SearchMetrics searchMetrics;
+    private final RelevanceScorer relevanceScorer;
+    private final ExecutorService siteSearchExecutor;
+    private final long siteSearchTimeout;
 
     @Autowired
     public SearchEngine(SiteRepository siteRepository, PageRepository pageRepository,
                         LemmaRepository lemmaRepository, IndexRepository indexRepository,
-                        Lemmatisator lemmatisator) {
+                        Lemmatisator lemmatisator, InvertedIndex invertedIndex, SearchCache searchCache,
+                        SearchMetrics searchMetrics, RelevanceScorer relevanceScorer, Config config) {
         this.siteRepository = siteRepository;
         this.pageRepository = pageRepository;
         this.lemmaRepository = lemmaRepository;
         this.indexRepository = indexRepository;
         this.lemmatisator = lemmatisator;
+        this.invertedIndex = invertedIndex;
+        this.searchCache = searchCache;
+        this.searchMetrics = searchMetrics;
+        this.relevanceScorer = relevanceScorer;
+        this.siteSearchTimeout = config.getSiteSearchTimeout();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.siteSearchExecutor = new ThreadPoolExecutor(config.getSearchThreads(), config.getSearchThreads(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getSearchQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "site-search-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
     }
 
-    public List<SearchResult> getResultList(String query, Site site) {
-        List<SearchResult> results = new ArrayList<>();
-        int limitOfPresence = (int) (pageRepository.countBySiteAndCode(site, 200) * 0.8);
-        List<String> lemmas = lemmatisator.convertTextIntoLemmasList(query);
-        List<Lemma> uniqueLemmas = findUniqueLemmas(lemmas, site, limitOfPresence);
+    /**
+     * Searches all sites in parallel. A site that does not answer within {@code siteSearchTimeout},
+     * or cannot be queued because the search pool is saturated, is left out of the results, so one
+     * slow site does not hold up the others. Searches still running at the deadline are cancelled.
+     */
+    private List<SiteTopPages> searchSites(List<Site> sites, List<String> lemmas, int k) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(siteSearchTimeout);
+        List<Future<SiteTopPages>> futures = new ArrayList<>(sites.size());
+        for (int i = 0; i < sites.size(); i++) {
+            int siteIndex = i;
+            Site site = sites.get(i);
+            try {
+                futures.add(siteSearchExecutor.submit(() -> searchSite(siteIndex, site, lemmas, k)));
+            } catch (RejectedExecutionException e) {
+                logger.warn(site.getName() + " -- Search rejected, the search queue is full");
+                searchMetrics.siteTimedOut();
+                futures.add(null);
+            }
+        }
+        List<SiteTopPages> siteTopPages = new ArrayList<>(sites.size());
+        for (int i = 0; i < futures.size(); i++) {
+            siteTopPages.add(awaitSite(sites.get(i), futures.get(i), deadline));
+        }
+        return siteTopPages;
+    }
+
+    private SiteTopPages awaitSite(Site site, Future<SiteTopPages> future, long deadline) {
+        if (future == null) {
+            return SiteTopPages.NONE;
+        }
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.warn(site.getName() + " -- Search timed out after " + siteSearchTimeout + " ms");
+            searchMetrics.siteTimedOut();
+        } catch (ExecutionException e) {
+            logger.error(site.getName() + " -- Error occurred while searching", e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        return SiteTopPages.NONE;
+    }
+
+    private SiteTopPages searchSite(int siteIndex, Site site, List<String> lemmas, int k) {
+        ScoredPages scoredPages = getScoredPages(lemmas, site);
+        TopScoredPages topPages = searchMetrics.time(SearchMetrics.SCORE, () -> {
+            TopScoredPages top = new TopScoredPages(Math.min(k, scoredPages.getSize()));
+            top.offerAll(siteIndex, scoredPages);
+            return top;
+        });
+        return new SiteTopPages(scoredPages.getSize(), topPages);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        siteSearchExecutor.shutdownNow();
+    }
+
+    private ScoredPages getScoredPages(List<String> lemmas, Site site) {
+        return searchCache.get(site.getId(), lemmas, () -> rankPages(lemmas, site));
+    }
+
+    private ScoredPages rankPages(List<String> lemmas, Site site) {
+        if (invertedIndex.isReady()) {
+            return rankPagesFromIndex(lemmas, site);
+        }
+        return rankPagesFromDatabase(lemmas, site);
+    }
+
+    private ScoredPages rankPagesFromIndex(List<String> lemmas, Site site) {
+        List<PostingList> postingLists = searchMetrics.time(SearchMetrics.LOOKUP, () -> findPostings(lemmas, site));
+        if (postingLists.isEmpty()) {
+            return ScoredPages.EMPTY;
+        }
+        ScoredPages matchingPages = searchMetrics.time(SearchMetrics.MATCH,
+                () -> invertedIndex.intersect(site.getId(), postingLists, relevanceScorer));
+        return searchMetrics.time(SearchMetrics.SCORE, matchingPages::normalized);
+    }
+
+    private List<PostingList> findPostings(List<String> lemmas, Site site) {
+        int limitOfPresence = (int) (invertedIndex.getPageCount(site.getId()) * 0.8);
+        List<PostingList> postingLists = new ArrayList<>();
+        for (String lemma : lemmas) {
+            PostingList postingList = invertedIndex.getPostings(site.getId(), lemma);
+            if (postingList == null || postingList.size() > limitOfPresence) {
+                return new ArrayList<>();
+            }
+            postingLists.add(postingList);
+        }
+        return postingLists;
+    }
+
+    private ScoredPages rankPagesFromDatabase(List<String> lemmas, Site site) {
+        List<Lemma> uniqueLemmas = searchMetrics.time(SearchMetrics.LOOKUP, () -> findUniqueLemmas(lemmas, site,
+                (int) (pageRepository.countBySiteAndCode(site, 200) * 0.8)));
         if (uniqueLemmas.isEmpty()) {
-            return results;
+            return ScoredPages.EMPTY;
         }
-        List<Page> matchingPages = findMatchingPages(uniqueLemmas);
+        List<PageRelevance> matchingPages = searchMetrics.time(SearchMetrics.MATCH,
+                () -> indexRepository.findRelevanceByLemmas(site.getId(), uniqueLemmas,
+                        uniqueLemmas.size()));
         if (matchingPages.isEmpty()) {
-            return results;
+            return ScoredPages.EMPTY;
         }
-        Map<Page, Float> pageRelevanceMap = getPageRelevanceMap(matchingPages, uniqueLemmas);
-        float maxRelevance = getMaxRelevance(pageRelevanceMap);
-        for (Map.Entry<Page, Float> entry : pageRelevanceMap.entrySet()) {
-            Page page = entry.getKey();
-            float relativeRelevance = maxRelevance != 0 ? entry.getValue() / maxRelevance : 0;
-            results.add(new SearchResult(site.getUrl(),
-                    site.getName(),
-                    Objects.equals(page.getPath(), site.getUrl()) ?
-                            site.getUrl() :
-                            page.getPath().replace(site.getUrl(), ""),
-                    page.getPath(),
-                    page.getPath(),
-                    relativeRelevance));
+        return searchMetrics.time(SearchMetrics.SCORE, () -> scorePages(matchingPages));
+    }
+
+    private static ScoredPages scorePages(List<PageRelevance> matchingPages) {
+        long[] pageIds = new long[matchingPages.size()];
+        float[] scores = new float[matchingPages.size()];
+        for (int i = 0; i < matchingPages.size(); i++) {
+            pageIds[i] = matchingPages.get(i).getPageId();
+            scores[i] = matchingPages.get(i).getRelevance().floatValue();
         }
-        return results;
+        return new ScoredPages(pageIds, scores, pageIds.length).normalized();
+    }
+
+    private SearchResult createSearchResult(Site site, String path, float relativeRelevance) {
+        return new SearchResult(site.getUrl(),
+                site.getName(),
+                Objects.equals(path, site.getUrl()) ?
+                        site.getUrl() :
+                        path.replace(site.getUrl(), ""),
+                path,
+                path,
+                relativeRelevance);
     }
 
     private List<Lemma> findUniqueLemmas(List<String> lemmas, Site site, int limitOfPresence) {
@@ -82,185 +213,127 @@ public final class SearchEngine {
         return uniqueLemmas;
     }
 
-    private List<Page> findMatchingPages(List<Lemma> uniqueLemmas) {
-        long lemmaCount = uniqueLemmas.size();
-        return pageRepository.findAllByLemmas(uniqueLemmas, lemmaCount);
-    }
-
-    private Map<Page, Float> getPageRelevanceMap(List<Page> matchingPages, List<Lemma> uniqueLemmas) {
-        Map<Page, Float> pageRelevanceMap = new HashMap<>();
-        for (Page page : matchingPages) {
-            float absoluteRelevance = 0;
-            for (Lemma lemma : uniqueLemmas) {
-                Index index = indexRepository.findByLemmaAndPage(lemma, page);
-                if (index != null) {
-                    absoluteRelevance += index.getRank();
-                }
-            }
-            pageRelevanceMap.put(page, absoluteRelevance);
+    /**
+     * Scores matching pages of every requested site, counts them and builds results only for
+     * the {@code offset}/{@code limit} window, selected with a bounded heap.
+     */
+    public Search search(String query, Site site, int offset, int limit) {
+        Timer.Sample sample = searchMetrics.startRequest();
+        try {
+            return searchWindow(query, site, offset, limit);
+        } finally {
+            searchMetrics.stopRequest(sample, site == null);
         }
-        return pageRelevanceMap;
-    }
-
-    private float getMaxRelevance(Map<Page, Float> pageRelevanceMap) {
-        return pageRelevanceMap.values().stream()
-                .max(Float::compareTo)
-                .orElse(0f);
     }
 
-    public Search search(String query, Site site, int offset, int limit) {
-        TreeSet<SearchResult> searchResults;
-        if (site == null) {
-            searchResults = new TreeSet<>();
-            siteRepository.findAll().forEach(s -> searchResults.addAll(getResultList(query, s)));
-        } else {
-            searchResults = new TreeSet<>(getResultList(query, site));
+    private Search searchWindow(String query, Site site, int offset, int limit) {
+        List<String> lemmas = searchMetrics.time(SearchMetrics.LEMMATIZE,
+                () -> lemmatisator.convertTextIntoLemmasList(query));
+        List<Site> sites = site == null ? siteRepository.findAllByServingTrue() : Collections.singletonList(site);
+        int k = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        List<SiteTopPages> siteTopPages = sites.size() == 1
+                ? Collections.singletonList(searchSite(0, sites.get(0), lemmas, k))
+                : searchSites(sites, lemmas, k);
+        int count = 0;
+        for (SiteTopPages topOfSite : siteTopPages) {
+            count += topOfSite.count;
         }
 
-        List<SearchResult> resultList = new ArrayList<>(searchResults);
-        int endIndex = Math.min(offset + limit, resultList.size());
-        List<SearchResult> subList = resultList.subList(offset, endIndex);
-        subList.forEach(s -> {
-            Page page = pageRepository.findByPath(s.getSnippet());
-            Document doc = Jsoup.parse(page.getContent());
-            String text = doc.text();
-            List<String> lemmas = lemmatisator.convertTextIntoLemmasList(query);
-            s.setSnippet(generateHighlightedSnippet(text, lemmas));
-            s.setTitle(getSearchResultTitle(page, text));
-        });
-
         Search search = new Search();
-        search.setCount(searchResults.size());
-        search.setResult(true);
-        search.setSearchResultSet(searchResults);
-
-        return search;
-    }
-
-    private String getSearchResultTitle(Page page, String text) {
-        TagNode node = cleaner.clean(page.getContent());
-        String title = "";
-        try {
-            title = getTitleFromNode(node);
-            if (title == null) {
-                title = getTitleFromAttribute(node);
-            }
-            if (title == null) {
-                title = getTitleFromLemmas(text);
-            }
-        } catch (XPatherException e) {
-            e.printStackTrace();
+        search.setCount(count);
+        if (offset >= count || limit <= 0) {
+            return search;
         }
-        return title;
+        int size = Math.min(k, count);
+        TopScoredPages topPages = searchMetrics.time(SearchMetrics.SCORE, () -> {
+            TopScoredPages top = new TopScoredPages(size);
+            siteTopPages.forEach(topOfSite -> top.offerAll(topOfSite.topPages));
+            top.sort();
+            return top;
+        });
+        return searchMetrics.time(SearchMetrics.SNIPPET, () -> {
+            renderResults(search, topPages, offset, sites, lemmas);
+            return search;
+        });
     }
 
-    private String getTitleFromNode(TagNode node) throws XPatherException {
-        Object[] titleNodes = node.evaluateXPath("//head/title");
-        if (titleNodes.length > 0) {
-            TagNode titleNode = (TagNode) titleNodes[0];
-            return titleNode.getText().toString();
+    /**
+     * Loads text and lemma offsets of the selected pages and builds their results.
+     */
+    private void renderResults(Search search, TopScoredPages topPages, int offset, List<Site> sites,
+                               List<String> lemmas) {
+        Map<Long, List<Long>> pageIdsBySite = new HashMap<>();
+        for (int i = offset; i < topPages.size(); i++) {
+            pageIdsBySite.computeIfAbsent(sites.get(topPages.getSite(i)).getId(), id -> new ArrayList<>())
+                    .add(topPages.getPageId(i));
         }
-        return null;
-    }
-
-    private String getTitleFromAttribute(TagNode node) throws XPatherException {
-        Object[] titleNodes = node.evaluateXPath("//span[@title]");
-        for (Object obj : titleNodes) {
-            if (obj instanceof TagNode) {
-                TagNode spanNode = (TagNode) obj;
-                return spanNode.getAttributeByName("title");
+        Map<Long, PageSummary> pages = new HashMap<>();
+        Map<Long, List<LemmaPositions>> positionsByPage = new HashMap<>();
+        // one query per site, so that only the page and index partitions of those sites are read
+        pageIdsBySite.forEach((siteId, sitePageIds) -> {
+            pageRepository.findSummariesBySiteIdAndIdIn(siteId, sitePageIds)
+                    .forEach(page -> pages.put(page.getId(), page));
+            indexRepository.findPositions(siteId, sitePageIds, lemmas)
+                    .forEach(positions -> positionsByPage.computeIfAbsent(positions.getPageId(),
+                            id -> new ArrayList<>()).add(positions));
+        });
+        for (int i = offset; i < topPages.size(); i++) {
+            PageSummary page = pages.get(topPages.getPageId(i));
+            if (page == null) {
+                continue;
             }
-        }
-        return null;
-    }
-
-    private String getTitleFromLemmas(String text) {
-        Map<String, Integer> lemmas = lemmatisator.collectLemmasAndRanks(text);
-        Map.Entry<String, Integer> maxEntry = null;
-        for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
-            if (maxEntry == null || entry.getValue().compareTo(maxEntry.getValue()) > 0) {
-                maxEntry = entry;
+            Site site = sites.get(topPages.getSite(i));
+            if (page.getText() == null) {
+                page = summarizeContent(site.getId(), page);
             }
+            SearchResult searchResult = createSearchResult(site, page.getPath(),
+                    topPages.getScore(i));
+            searchResult.setSnippet(SnippetBuilder.build(page.getText(),
+                    getLemmaPositions(page.getText(), positionsByPage.get(page.getId()), lemmas)));
+            searchResult.setTitle(page.getTitle());
+            search.getSearchResults().add(searchResult);
         }
-        return maxEntry == null ? "" :
-                maxEntry.getKey().substring(0, 1).toUpperCase() + maxEntry.getKey().substring(1);
     }
 
-    private String generateHighlightedSnippet(String text, List<String> lemmas) {
-        StringBuilder result = new StringBuilder();
-        String[] words = text.split("[^a-zA-Zа-яА-Я]+");
-        StringBuilder highlightedTextBuilder = new StringBuilder(text);
-        int currentIndex = 0;
-        for (String word : words) {
-            String lemma = lemmatisator.getWordLemma(word.toLowerCase());
-            if (lemmas.contains(lemma)) {
-                int startIndex = highlightedTextBuilder.indexOf(word, currentIndex);
-                int endIndex = startIndex + word.length();
-                highlightedTextBuilder.insert(startIndex, "<b>");
-                highlightedTextBuilder.insert(endIndex + 3, "</b>");
-                currentIndex = endIndex + 7;
+    /**
+     * Decodes stored offsets of the query lemmas, or finds them in the text for pages
+     * indexed before offsets were stored.
+     */
+    private List<int[]> getLemmaPositions(String text, List<LemmaPositions> storedPositions, List<String> lemmas) {
+        List<int[]> positions = new ArrayList<>();
+        if (storedPositions != null && storedPositions.stream().allMatch(stored -> stored.getPositions() != null)) {
+            storedPositions.forEach(stored -> positions.add(TokenPositions.decode(stored.getPositions())));
+            return positions;
+        }
+        Map<String, int[]> textPositions = lemmatisator.collectLemmaPositions(text);
+        for (String lemma : lemmas) {
+            int[] lemmaPositions = textPositions.get(lemma);
+            if (lemmaPositions != null) {
+                positions.add(lemmaPositions);
             }
         }
-        result.append(extractSnippetWithMaxHighlights(highlightedTextBuilder));
-        return result.toString();
+        return positions;
     }
 
-    private StringBuilder extractSnippetWithMaxHighlights(StringBuilder inputText) {
-        List<Integer> boldWordsIndices = findSubstringIndices(inputText, "<b>");
-        int[] firstAndLastIndices = findMaxConsecutiveSubsequence(boldWordsIndices);
-        int maxIndex = Math.min(
-                firstAndLastIndices[1] + (firstAndLastIndices[0] == firstAndLastIndices[1] ? 100 : 50),
-                inputText.length()
-        );
-        int minIndex = Math.max(
-                0,
-                firstAndLastIndices[0] - (firstAndLastIndices[0] == firstAndLastIndices[1] ? 100 : 50)
-        );
-        int initialLength = inputText.length();
-        inputText.delete(maxIndex, inputText.length());
-        if (maxIndex < initialLength) {
-            inputText.delete(inputText.lastIndexOf(" "), inputText.length());
-            inputText.append("...");
-        }
-        inputText.delete(0, minIndex);
-        if (minIndex > 0) {
-            inputText.delete(0, inputText.indexOf(" "));
-            inputText.insert(0, "...");
-        }
-        return inputText;
+    /**
+     * Extracts text and title from the HTML of a page stored before they were kept separately.
+     */
+    private PageSummary summarizeContent(long siteId, PageSummary page) {
+        Document document = Jsoup.parse(pageRepository.findContentBySiteIdAndId(siteId, page.getId()));
+        String text = document.text();
+        String title = PageTitles.extract(document, lemmatisator.collectLemmasAndRanksFromText(text));
+        return new PageSummary(page.getId(), page.getPath(), title, text);
     }
 
-    private List<Integer> findSubstringIndices(StringBuilder text, String substring) {
-        List<Integer> indices = new ArrayList<>();
-        int index = text.indexOf(substring);
-        while (index != -1) {
-            indices.add(index);
-            index = text.indexOf(substring, index + substring.length());
-        }
-        return indices;
-    }
+    private static final class SiteTopPages {
+        private static final SiteTopPages NONE = new SiteTopPages(0, new TopScoredPages(0));
 
-    public int[] findMaxConsecutiveSubsequence(List<Integer> nums) {
-        int maxLength = 0;
-        int start = 0;
-        int end = 0;
-        int currentLength = 1;
+        private final int count;
+        private final TopScoredPages topPages;
 
-        for (int i = 1; i < nums.size(); i++) {
-            if ((nums.get(i) - nums.get(i - 1)) < 225
-                    && (nums.get(end) - nums.get(start)) < 225) {
-                currentLength++;
-                if (currentLength > maxLength) {
-                    maxLength = currentLength;
-                    start = i - maxLength + 1;
-                    end = i;
-                }
-            } else {
-                currentLength = 1;
-            }
+        private SiteTopPages(int count, TopScoredPages topPages) {
+            this.count = count;
+            this.topPages = topPages;
         }
-        return start == end ?
-                new int[]{nums.get(0), nums.get(0)} :
-                new int[]{nums.get(start), nums.get(end)};
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package searchengine.services.searching;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Search meters: request latency, latency of each search phase, site timeouts and the
+ * counters of the result cache.
+ */
+@Component
+public class SearchMetrics {
+
+    public static final String LEMMATIZE = "lemmatize";
+    public static final String LOOKUP = "lookup";
+    public static final String MATCH = "match";
+    public static final String SCORE = "score";
+    public static final String SNIPPET = "snippet";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> phases = new HashMap<>();
+    private final Timer siteRequests;
+    private final Timer allSitesRequests;
+    private final Counter siteTimeouts;
+
+    @Autowired
+    public SearchMetrics(MeterRegistry registry, SearchCache searchCache) {
+        this.registry = registry;
+        for (String phase : new String[]{LEMMATIZE, LOOKUP, MATCH, SCORE, SNIPPET}) {
+            phases.put(phase, Timer.builder("search.phase")
+                    .description("Time spent in one phase of a search")
+                    .tag("phase", phase)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        siteRequests = requestTimer("site");
+        allSitesRequests = requestTimer("all");
+        siteTimeouts = Counter.builder("search.site.timeouts")
+                .description("Sites left out of all-sites results after missing the timeout")
+                .register(registry);
+        Gauge.builder("search.cache.size", searchCache, cache -> cache.getStatistics().getSize())
+                .description("Cached query rankings")
+                .register(registry);
+        cacheCounter(searchCache, "hits", cache -> cache.getStatistics().getHits());
+        cacheCounter(searchCache, "misses", cache -> cache.getStatistics().getMisses());
+        cacheCounter(searchCache, "evictions", cache -> cache.getStatistics().getEvictions());
+        cacheCounter(searchCache, "invalidations", cache -> cache.getStatistics().getInvalidations());
+    }
+
+    public <T> T time(String phase, Supplier<T> action) {
+        return phases.get(phase).record(action);
+    }
+
+    public Timer.Sample startRequest() {
+        return Timer.start(registry);
+    }
+
+    public void stopRequest(Timer.Sample sample, boolean allSites) {
+        sample.stop(allSites ? allSitesRequests : siteRequests);
+    }
+
+    public void siteTimedOut() {
+        siteTimeouts.increment();
+    }
+
+    private Timer requestTimer(String sites) {
+        return Timer.builder("search.requests")
+                .description("Search latency")
+                .tag("sites", sites)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private void cacheCounter(SearchCache searchCache, String name, ToDoubleFunction<SearchCache> value) {
+        FunctionCounter.builder("search.cache." + name, searchCache, value).register(registry);
+    }
+}
@@ -0,0 +1,116 @@
+package searchengine.services.searching;
+
+import searchengine.services.parsing.Lemmatisator;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds result snippets from lemma offsets in the page text. A sliding window over the merged
+ * offsets finds the stretch of text holding the most distinct query lemmas, then the most
+ * occurrences, and only words at known offsets are highlighted. The work depends on the number
+ * of query lemma occurrences, not on the length of the page.
+ */
+public final class SnippetBuilder {
+
+    private static final int MAX_WINDOW = 225;
+    private static final int PADDING = 50;
+    private static final int SINGLE_MATCH_PADDING = 100;
+
+    private SnippetBuilder() {
+    }
+
+    /**
+     * @param lemmaPositions ascending offsets of each query lemma in {@code text}
+     */
+    public static String build(String text, List<int[]> lemmaPositions) {
+        long[] occurrences = merge(lemmaPositions);
+        if (occurrences.length == 0) {
+            return clip(text, 0, Math.min(text.length(), 2 * SINGLE_MATCH_PADDING), 0, 0, occurrences);
+        }
+        int[] lemmaCounts = new int[lemmaPositions.size()];
+        int distinct = 0;
+        int bestFirst = 0;
+        int bestLast = 0;
+        int bestDistinct = 0;
+        int first = 0;
+        for (int last = 0; last < occurrences.length; last++) {
+            if (lemmaCounts[lemma(occurrences[last])]++ == 0) {
+                distinct++;
+            }
+            while (offset(occurrences[last]) - offset(occurrences[first]) > MAX_WINDOW) {
+                if (--lemmaCounts[lemma(occurrences[first++])] == 0) {
+                    distinct--;
+                }
+            }
+            if (distinct > bestDistinct || distinct == bestDistinct && last - first > bestLast - bestFirst) {
+                bestDistinct = distinct;
+                bestFirst = first;
+                bestLast = last;
+            }
+        }
+        int padding = bestFirst == bestLast ? SINGLE_MATCH_PADDING : PADDING;
+        int start = offset(occurrences[bestFirst]);
+        int end = Lemmatisator.wordEnd(text, offset(occurrences[bestLast]));
+        return clip(text, Math.max(0, start - padding), Math.min(text.length(), end + padding), start, end,
+                occurrences);
+    }
+
+    /**
+     * Cuts {@code [from, to)} to whole words without cutting into {@code [keepFrom, keepTo)},
+     * marks cut ends with an ellipsis and highlights occurrences inside.
+     */
+    private static String clip(String text, int from, int to, int keepFrom, int keepTo, long[] occurrences) {
+        if (from > 0) {
+            int space = text.indexOf(' ', from);
+            from = space < 0 || space >= keepFrom ? from : space + 1;
+        }
+        if (to < text.length()) {
+            int space = text.lastIndexOf(' ', to);
+            to = space < keepTo || space <= from ? to : space;
+        }
+        StringBuilder snippet = new StringBuilder(to - from + 32);
+        if (from > 0) {
+            snippet.append("...");
+        }
+        int copied = from;
+        for (long occurrence : occurrences) {
+            int offset = offset(occurrence);
+            int wordEnd = Lemmatisator.wordEnd(text, offset);
+            if (offset < copied || wordEnd > to) {
+                continue;
+            }
+            snippet.append(text, copied, offset).append("<b>").append(text, offset, wordEnd).append("</b>");
+            copied = wordEnd;
+        }
+        snippet.append(text, copied, to);
+        if (to < text.length()) {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+
+    private static long[] merge(List<int[]> lemmaPositions) {
+        int size = 0;
+        for (int[] positions : lemmaPositions) {
+            size += positions.length;
+        }
+        long[] occurrences = new long[size];
+        int i = 0;
+        for (int lemma = 0; lemma < lemmaPositions.size(); lemma++) {
+            for (int position : lemmaPositions.get(lemma)) {
+                occurrences[i++] = (long) position << 32 | lemma;
+            }
+        }
+        Arrays.sort(occurrences);
+        return occurrences;
+    }
+
+    private static int offset(long occurrence) {
+        return (int) (occurrence >>> 32);
+    }
+
+    private static int lemma(long occurrence) {
+        return (int) occurrence;
+    }
+}
@@ -0,0 +1,129 @@
+package searchengine.services.searching;
+
+/**
+ * Selects the {@code k} best pages out of the scored pages of several sites with a bounded
+ * min-heap over primitive arrays, in O(n log k) time and O(k) memory. Ties are broken by site
+ * order, then by page id, so pagination over the same input is stable.
+ */
+public class TopScoredPages {
+
+    private final float[] scores;
+    private final long[] pageIds;
+    private final int[] sites;
+    private int size;
+
+    public TopScoredPages(int k) {
+        scores = new float[k];
+        pageIds = new long[k];
+        sites = new int[k];
+    }
+
+    public void offerAll(int site, ScoredPages scoredPages) {
+        for (int i = 0; i < scoredPages.getSize(); i++) {
+            offer(site, scoredPages.getPageIds()[i], scoredPages.getScores()[i]);
+        }
+    }
+
+    public void offerAll(TopScoredPages other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.sites[i], other.pageIds[i], other.scores[i]);
+        }
+    }
+
+    public void offer(int site, long pageId, float score) {
+        if (size < scores.length) {
+            set(size, score, pageId, site);
+            siftUp(size++);
+        } else if (size > 0 && isWorse(0, score, pageId, site)) {
+            set(0, score, pageId, site);
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Orders the selected pages best first. The selector must not be offered pages afterwards.
+     */
+    public void sort() {
+        for (int last = size - 1; last > 0; last--) {
+            swap(0, last);
+            siftDown(0, last);
+        }
+    }
+
+    public float getScore(int i) {
+        return scores[i];
+    }
+
+    public long getPageId(int i) {
+        return pageIds[i];
+    }
+
+    public int getSite(int i) {
+        return sites[i];
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isWorse(i, scores[parent], pageIds[parent], sites[parent])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        siftDown(i, size);
+    }
+
+    private void siftDown(int i, int heapSize) {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < heapSize && isWorse(left, scores[worst], pageIds[worst], sites[worst])) {
+                worst = left;
+            }
+            if (right < heapSize && isWorse(right, scores[worst], pageIds[worst], sites[worst])) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    /**
+     * Whether the entry at {@code i} ranks below the given page.
+     */
+    private boolean isWorse(int i, float score, long pageId, int site) {
+        if (scores[i] != score) {
+            return scores[i] < score;
+        }
+        if (sites[i] != site) {
+            return sites[i] > site;
+        }
+        return pageIds[i] > pageId;
+    }
+
+    private void set(int i, float score, long pageId, int site) {
+        scores[i] = score;
+        pageIds[i] = pageId;
+        sites[i] = site;
+    }
+
+    private void swap(int i, int j) {
+        float score = scores[i];
+        long pageId = pageIds[i];
+        int site = sites[i];
+        set(i, scores[j], pageIds[j], sites[j]);
+        set(j, score, pageId, site);
+    }
+}
@@ -0,0 +1,93 @@
+package searchengine.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Approximate visited set: a Bloom filter sized once for the expected number of URLs and the
+ * false positive rate, so memory stays fixed however many URLs are added. A false positive makes
+ * the crawler treat an unseen URL as visited and skip it. Bits are set with CAS, without locks.
+ */
+public class BloomVisitedSet implements VisitedSet {
+
+    private static final long MAX_BITS = (long) Integer.MAX_VALUE * Long.SIZE;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final LongAdder size = new LongAdder();
+
+    public BloomVisitedSet(long expectedUrls, double falsePositiveRate) {
+        if (expectedUrls <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter parameters: " + expectedUrls + " URLs, "
+                    + falsePositiveRate + " false positive rate");
+        }
+        long bits = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bits = Math.min(Math.max(bits, Long.SIZE), MAX_BITS);
+        words = new AtomicLongArray((int) ((bits + Long.SIZE - 1) / Long.SIZE));
+        bitCount = (long) words.length() * Long.SIZE;
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedUrls * Math.log(2)));
+    }
+
+    @Override
+    public boolean add(String url) {
+        long hash = UrlHash.hash64(url);
+        long step = UrlHash.mix64(hash + 0x9E3779B97F4A7C15L) | 1;
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++) {
+            added |= setBit(Math.floorMod(hash + i * step, bitCount));
+        }
+        if (added) {
+            size.increment();
+        }
+        return added;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long hash = UrlHash.hash64(url);
+        long step = UrlHash.mix64(hash + 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * step, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Number of URLs accepted as new. Lower than the number of distinct URLs added by the
+     * false positives.
+     */
+    @Override
+    public long size() {
+        return size.sum();
+    }
+
+    @Override
+    public long memoryBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0);
+        }
+        size.reset();
+    }
+
+    private boolean setBit(long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long word;
+        do {
+            word = words.get(index);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(index, word, word | mask));
+        return true;
+    }
+}
@@ -1,74 +0,0 @@
-package searchengine.util;
-
-import java.util.AbstractSet;
-import java.util.Iterator;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-
-public class ConcurrentHashSet<T> extends AbstractSet<T> {
-
-    private static final Object PRESENT = new Object();
-
-    private final ConcurrentHashMap<T, Object> map;
-
-    public ConcurrentHashSet() {
-        map = new ConcurrentHashMap<>();
-    }
-
-    public ConcurrentHashSet(int initialCapacity) {
-        map = new ConcurrentHashMap<>(initialCapacity);
-    }
-
-    public ConcurrentHashSet(int initialCapacity, float loadFactor, int concurrencyLevel) {
-        map = new ConcurrentHashMap<>(initialCapacity, loadFactor, concurrencyLevel);
-    }
-
-    @Override
-    public int size() {
-        return map.size();
-    }
-
-    @Override
-    public boolean isEmpty() {
-        return map.isEmpty();
-    }
-
-    @Override
-    public boolean contains(Object o) {
-        return map.containsKey(o);
-    }
-
-    @Override
-    public boolean add(T t) {
-        return map.put(t, PRESENT) == null;
-    }
-
-    @Override
-    public boolean remove(Object o) {
-        return map.remove(o) == PRESENT;
-    }
-
-    @Override
-    public void clear() {
-        map.clear();
-    }
-
-    @Override
-    public Iterator<T> iterator() {
-        return map.keySet().iterator();
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (!(o instanceof ConcurrentHashSet)) return false;
-        if (!super.equals(o)) return false;
-        ConcurrentHashSet<?> that = (ConcurrentHashSet<?>) o;
-        return Objects.equals(map, that.map);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(super.hashCode(), map);
-    }
-}
\ No newline at end of file
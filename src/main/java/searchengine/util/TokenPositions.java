@@ -0,0 +1,54 @@
+package searchengine.util;
+
+import java.util.Arrays;
+
+/**
+ * Codec for ascending character offsets of a lemma in page text: varint-encoded deltas,
+ * so an occurrence takes one or two bytes.
+ */
+public final class TokenPositions {
+
+    private static final int[] NONE = new int[0];
+
+    private TokenPositions() {
+    }
+
+    public static byte[] encode(int[] positions) {
+        byte[] bytes = new byte[positions.length * 5];
+        int length = 0;
+        int previous = 0;
+        for (int position : positions) {
+            int delta = position - previous;
+            previous = position;
+            while ((delta & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    public static int[] decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return NONE;
+        }
+        int[] positions = new int[bytes.length];
+        int size = 0;
+        int previous = 0;
+        int i = 0;
+        while (i < bytes.length) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[i++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += delta;
+            positions[size++] = previous;
+        }
+        return Arrays.copyOf(positions, size);
+    }
+}
@@ -0,0 +1,31 @@
+package searchengine.util;
+
+public final class UrlHash {
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private UrlHash() {
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 chars of the URL followed by the MurmurHash3 finalizer,
+     * which spreads the FNV output evenly over all bits.
+     */
+    public static long hash64(CharSequence url) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < url.length(); i++) {
+            hash = (hash ^ url.charAt(i)) * FNV_PRIME;
+        }
+        return mix64(hash);
+    }
+
+    public static long mix64(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,30 @@
+package searchengine.util;
+
+import java.util.Collection;
+
+/**
+ * Set of URLs the crawler has already queued. Implementations keep hashes instead of URL strings,
+ * so memory does not depend on URL length.
+ */
+public interface VisitedSet {
+
+    /**
+     * @return {@code true} if the URL was not in the set
+     */
+    boolean add(String url);
+
+    boolean contains(String url);
+
+    default void addAll(Collection<String> urls) {
+        urls.forEach(this::add);
+    }
+
+    long size();
+
+    /**
+     * Memory held by the set, in bytes.
+     */
+    long memoryBytes();
+
+    void clear();
+}
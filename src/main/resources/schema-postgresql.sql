@@ -1 +1,40 @@
-CREATE SCHEMA search_engine;
\ No newline at end of file
+CREATE SCHEMA IF NOT EXISTS search_engine;
+
+-- page, lemma and index are list-partitioned by site_id, one partition per site row
+-- (see SitePartitions); the remaining columns, indexes and the site table come from Hibernate.
+-- Primary keys include the partition key, so index rows reference pages and lemmas without
+-- foreign keys. Index rows are keyed by lemma first, the order search reads them in.
+
+CREATE SEQUENCE IF NOT EXISTS search_engine.page_id_seq;
+CREATE SEQUENCE IF NOT EXISTS search_engine.lemma_id_seq;
+
+CREATE TABLE IF NOT EXISTS search_engine.page (
+    id            BIGINT       NOT NULL,
+    site_id       BIGINT       NOT NULL,
+    path          VARCHAR(255) NOT NULL,
+    code          INT          NOT NULL,
+    content       TEXT         NOT NULL,
+    title         TEXT,
+    plain_text    BYTEA,
+    etag          VARCHAR(255),
+    last_modified VARCHAR(64),
+    content_hash  CHAR(64),
+    PRIMARY KEY (site_id, id)
+) PARTITION BY LIST (site_id);
+
+CREATE TABLE IF NOT EXISTS search_engine.lemma (
+    id        BIGINT      NOT NULL,
+    site_id   BIGINT      NOT NULL,
+    lemma     VARCHAR(45) NOT NULL,
+    frequency INT         NOT NULL,
+    PRIMARY KEY (site_id, id)
+) PARTITION BY LIST (site_id);
+
+CREATE TABLE IF NOT EXISTS search_engine."index" (
+    site_id   BIGINT   NOT NULL,
+    lemma_id  BIGINT   NOT NULL,
+    page_id   BIGINT   NOT NULL,
+    ranks     SMALLINT NOT NULL,
+    positions BYTEA,
+    PRIMARY KEY (lemma_id, page_id, site_id)
+) PARTITION BY LIST (site_id);
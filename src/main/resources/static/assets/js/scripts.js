@@ -1663,9 +1663,9 @@
                                 $this.next('.API-error').remove();
                             }
                             if ($this.next('.API-success').length) {
-                                $this.next('.API-success').text('Страница добавлена/обновлена успешно');
+                                $this.next('.API-success').text('Страница поставлена в очередь на индексацию');
                             } else {
-                                $this.after('<div class="API-success">Страница добавлена/обновлена успешно</div>');
+                                $this.after('<div class="API-success">Страница поставлена в очередь на индексацию</div>');
                             }
                         } else {
                             if ($this.next('.API-success').length) {
@@ -0,0 +1,74 @@
+package searchengine.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.model.Site;
+import searchengine.model.StatusType;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SitePartitions} on a fresh database, with the schema the application creates at startup.
+ */
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class SitePartitionsTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    private SitePartitions sitePartitions;
+    @Autowired
+    private SiteRepository siteRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:postgresql://" + postgres.getHost() + ":"
+                + postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + postgres.getDatabaseName()
+                + "?currentSchema=search_engine");
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Test
+    void createsAndDropsPartitionsOfNewSite() {
+        assertTrue(sitePartitions.isPartitioned());
+        Site site = new Site("https://example.com/", "Example");
+        site.setStatus(StatusType.INDEXING);
+        site.setStatusTime(new Date());
+        long siteId = siteRepository.save(site).getId();
+
+        sitePartitions.create(siteId);
+        for (String partition : new String[]{"page_s", "lemma_s", "index_s"}) {
+            assertTrue(exists(partition + siteId), partition + siteId);
+        }
+        jdbcTemplate.update("INSERT INTO lemma (id, site_id, lemma, frequency) " +
+                "VALUES (nextval('lemma_id_seq'), ?, 'пример', 1)", siteId);
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM lemma_s" + siteId, Integer.class));
+
+        assertTrue(sitePartitions.drop(siteId));
+        for (String partition : new String[]{"page_s", "lemma_s", "index_s"}) {
+            assertFalse(exists(partition + siteId), partition + siteId);
+        }
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM lemma WHERE site_id = ?",
+                Integer.class, siteId));
+        siteRepository.deleteById(siteId);
+    }
+
+    private boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL",
+                Boolean.class, table));
+    }
+}
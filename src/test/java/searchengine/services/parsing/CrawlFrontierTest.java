@@ -0,0 +1,65 @@
+package searchengine.services.parsing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link CrawlFrontier} resumed from the log of a crawl that was killed without closing it.
+ */
+class CrawlFrontierTest {
+
+    private static final String START = "https://example.com/";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoresLinksOfStoredPageAfterCrash() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier(directory, 1);
+        frontier.add(START, 0);
+        frontier.flush();
+        assertEquals(START, frontier.poll(0, TimeUnit.MILLISECONDS).getUrl());
+        frontier.add(START + "a", 1);
+        frontier.add(START + "b", 1);
+        frontier.flush();
+        // the start page is stored, then the process dies before the log is closed
+        frontier.sync();
+        frontier.markDone(START);
+
+        CrawlFrontier resumed = new CrawlFrontier(directory, 1);
+        List<String> discovered = resumed.restore(Set.of(START));
+        assertEquals(List.of(START, START + "a", START + "b"), discovered);
+        assertEquals(List.of(START + "a", START + "b"), drain(resumed));
+    }
+
+    @Test
+    void requeuesPagesNotMarkedDoneAfterCrash() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier(directory, 2);
+        frontier.add(START, 0);
+        frontier.add(START + "a", 1);
+        frontier.flush();
+        frontier.markDone(START);
+
+        CrawlFrontier resumed = new CrawlFrontier(directory, 2);
+        resumed.restore(Collections.emptySet());
+        assertEquals(List.of(START, START + "a"), drain(resumed));
+    }
+
+    private static List<String> drain(CrawlFrontier frontier) throws InterruptedException {
+        List<String> links = new ArrayList<>();
+        CrawlFrontier.Link link;
+        while ((link = frontier.poll(0, TimeUnit.MILLISECONDS)) != null) {
+            links.add(link.getUrl());
+        }
+        return links;
+    }
+}
@@ -0,0 +1,166 @@
+package searchengine.services.parsing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.Config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link HttpPageFetcher} against a local stub server.
+ */
+class HttpPageFetcherTest {
+
+    private static final Charset WINDOWS_1251 = Charset.forName("windows-1251");
+
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+    private final List<Long> requestStarts = new CopyOnWriteArrayList<>();
+    private final List<String> requestPaths = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private HttpPageFetcher fetcher;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.createContext("/slow", exchange -> {
+            int active = activeRequests.incrementAndGet();
+            maxActiveRequests.accumulateAndGet(active, Math::max);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            activeRequests.decrementAndGet();
+            respond(exchange, "text/html; charset=UTF-8", "<html><body>slow</body></html>".getBytes(StandardCharsets.UTF_8));
+        });
+        server.createContext("/timed", exchange -> {
+            requestStarts.add(System.nanoTime());
+            respond(exchange, "text/html", "<html><body>timed</body></html>".getBytes(StandardCharsets.UTF_8));
+        });
+        server.createContext("/meta-charset", exchange -> respond(exchange, "text/html",
+                ("<html><head><meta charset=\"windows-1251\"></head><body>Привет, мир</body></html>")
+                        .getBytes(WINDOWS_1251)));
+        server.createContext("/http-equiv", exchange -> respond(exchange, "text/html",
+                ("<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=windows-1251\">" +
+                        "</head><body>Привет, мир</body></html>").getBytes(WINDOWS_1251)));
+        server.createContext("/header-charset", exchange -> respond(exchange, "text/html; charset=windows-1251",
+                "<html><body>Привет, мир</body></html>".getBytes(WINDOWS_1251)));
+        server.createContext("/style.css", exchange -> respond(exchange, "text/css",
+                "body { color: red }".getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/notes.txt", exchange -> respond(exchange, "text/plain; charset=UTF-8",
+                "plain text".getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/xhtml", exchange -> respond(exchange, "application/xhtml+xml",
+                "<html><body>xhtml</body></html>".getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/raw", exchange -> {
+            requestPaths.add(exchange.getRequestURI().getPath());
+            respond(exchange, "text/html", "<html><body>raw</body></html>".getBytes(StandardCharsets.UTF_8));
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        if (fetcher != null) {
+            fetcher.shutdown();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    void limitsConcurrentRequestsPerHost() {
+        fetcher = newFetcher(2, 1000);
+        List<CompletableFuture<FetchResult>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(fetcher.fetch(url("/slow?page=" + i)));
+        }
+        results.forEach(result -> assertEquals(200, result.join().getCode()));
+        assertEquals(2, maxActiveRequests.get());
+    }
+
+    @Test
+    void spacesRequestsByRate() {
+        fetcher = newFetcher(8, 10);
+        List<CompletableFuture<FetchResult>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(fetcher.fetch(url("/timed?page=" + i)));
+        }
+        results.forEach(CompletableFuture::join);
+        long spanMillis = TimeUnit.NANOSECONDS.toMillis(
+                requestStarts.stream().mapToLong(Long::longValue).max().orElseThrow()
+                        - requestStarts.stream().mapToLong(Long::longValue).min().orElseThrow());
+        assertTrue(spanMillis >= 350, "5 requests at 10 per second took " + spanMillis + " ms");
+    }
+
+    @Test
+    void decodesWithCharsetDeclaredInMarkup() {
+        fetcher = newFetcher(8, 1000);
+        assertEquals("Привет, мир", fetcher.fetch(url("/meta-charset")).join().parse().body().text());
+        assertEquals("Привет, мир", fetcher.fetch(url("/http-equiv")).join().parse().body().text());
+    }
+
+    @Test
+    void decodesWithCharsetFromHeader() {
+        fetcher = newFetcher(8, 1000);
+        FetchResult result = fetcher.fetch(url("/header-charset")).join();
+        assertEquals("windows-1251", result.getCharset());
+        assertEquals("Привет, мир", result.parse().body().text());
+    }
+
+    @Test
+    void skipsBodiesThatAreNotHtml() {
+        fetcher = newFetcher(8, 1000);
+        FetchResult css = fetcher.fetch(url("/style.css")).join();
+        assertEquals(200, css.getCode());
+        assertNull(css.getBody());
+        assertNull(fetcher.fetch(url("/notes.txt")).join().getBody());
+        assertNotNull(fetcher.fetch(url("/xhtml")).join().getBody());
+    }
+
+    @Test
+    void encodesCharactersNotAllowedInUri() {
+        fetcher = newFetcher(8, 1000);
+        assertEquals(200, fetcher.fetch(url("/raw/новости и статьи|архив")).join().getCode());
+        assertEquals(200, fetcher.fetch(url("/raw/already%20encoded path")).join().getCode());
+        assertEquals(List.of("/raw/новости и статьи|архив", "/raw/already encoded path"), requestPaths);
+    }
+
+    private HttpPageFetcher newFetcher(int maxConnectionsPerHost, double requestsPerSecondPerHost) {
+        Config config = new Config();
+        config.setUserAgent("HttpPageFetcherTest");
+        config.setReferrer("http://localhost");
+        config.setMaxConnectionsPerHost(maxConnectionsPerHost);
+        config.setRequestsPerSecondPerHost(requestsPerSecondPerHost);
+        return new HttpPageFetcher(config, new CrawlMetrics(new SimpleMeterRegistry()));
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package searchengine.services.parsing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link RobotsTxt} group selection and RFC 9309 path matching.
+ */
+class RobotsTxtTest {
+
+    private static final String SITE = "https://example.com";
+
+    @Test
+    void longestMatchWins() {
+        RobotsTxt robotsTxt = RobotsTxt.parse("User-agent: *\n" +
+                "Disallow: /news/\n" +
+                "Allow: /news/public/\n" +
+                "Disallow: /news/public/drafts\n", "SearchEngine");
+
+        assertTrue(robotsTxt.isAllowed(SITE + "/"));
+        assertFalse(robotsTxt.isAllowed(SITE + "/news/2023/"));
+        assertTrue(robotsTxt.isAllowed(SITE + "/news/public/1.html"));
+        assertFalse(robotsTxt.isAllowed(SITE + "/news/public/drafts/1.html"));
+    }
+
+    @Test
+    void allowWinsTie() {
+        RobotsTxt robotsTxt = RobotsTxt.parse("User-agent: *\n" +
+                "Disallow: /page\n" +
+                "Allow: /page\n", "SearchEngine");
+
+        assertTrue(robotsTxt.isAllowed(SITE + "/page"));
+        assertTrue(robotsTxt.isAllowed(SITE + "/page/1"));
+    }
+
+    @Test
+    void matchesWildcardAndEndAnchor() {
+        RobotsTxt robotsTxt = RobotsTxt.parse("User-agent: *\n" +
+                "Disallow: /*.pdf$\n" +
+                "Disallow: /search*q=\n" +
+                "Disallow: /exact$\n", "SearchEngine");
+
+        assertFalse(robotsTxt.isAllowed(SITE + "/files/report.pdf"));
+        assertTrue(robotsTxt.isAllowed(SITE + "/files/report.pdf?download=1"));
+        assertFalse(robotsTxt.isAllowed(SITE + "/search?page=2&q=java"));
+        assertTrue(robotsTxt.isAllowed(SITE + "/search?page=2"));
+        assertFalse(robotsTxt.isAllowed(SITE + "/exact"));
+        assertTrue(robotsTxt.isAllowed(SITE + "/exact/more"));
+    }
+
+    @Test
+    void picksGroupOfProductTokenIgnoringCase() {
+        String content = "User-agent: *\n" +
+                "Disallow: /\n" +
+                "\n" +
+                "User-agent: searchengine\n" +
+                "Disallow: /private/\n" +
+                "Crawl-delay: 2\n" +
+                "\n" +
+                "User-agent: SearchEngineBot\n" +
+                "Disallow: /bot/\n";
+
+        RobotsTxt robotsTxt = RobotsTxt.parse(content, "SearchEngine");
+        assertTrue(robotsTxt.isAllowed(SITE + "/bot/page"));
+        assertFalse(robotsTxt.isAllowed(SITE + "/private/page"));
+        assertEquals(2000L, robotsTxt.getCrawlDelay());
+
+        RobotsTxt other = RobotsTxt.parse(content, "Mozilla");
+        assertFalse(other.isAllowed(SITE + "/bot/page"));
+        assertNull(other.getCrawlDelay());
+    }
+
+    @Test
+    void mergesRepeatedGroupsOfSameAgent() {
+        RobotsTxt robotsTxt = RobotsTxt.parse("User-agent: *\n" +
+                "Disallow: /a/\n" +
+                "\n" +
+                "User-agent: Other\n" +
+                "User-agent: *\n" +
+                "Disallow: /b/\n" +
+                "\n" +
+                "Sitemap: https://example.com/sitemap.xml\n", "SearchEngine");
+
+        assertFalse(robotsTxt.isAllowed(SITE + "/a/1"));
+        assertFalse(robotsTxt.isAllowed(SITE + "/b/1"));
+        assertTrue(robotsTxt.isAllowed(SITE + "/c/1"));
+        assertEquals(List.of("https://example.com/sitemap.xml"), robotsTxt.getSitemaps());
+    }
+}
@@ -0,0 +1,78 @@
+package searchengine.services.parsing;
+
+import org.junit.jupiter.api.Test;
+import searchengine.exceptions.WebParserException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link Sitemap} parsing of plain and gzipped files, {@code urlset} and {@code sitemapindex}.
+ */
+class SitemapTest {
+
+    private static final String URLSET = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n" +
+            "  <url><loc>https://example.com/</loc><lastmod>2023-05-01</lastmod></url>\n" +
+            "  <url><loc> https://example.com/news/1 </loc><lastmod>2023-05-02T10:15:00+03:00</lastmod></url>\n" +
+            "  <url><loc>https://example.com/about</loc><lastmod>yesterday</lastmod></url>\n" +
+            "  <url><loc></loc></url>\n" +
+            "</urlset>\n";
+
+    @Test
+    void parsesUrlset() throws WebParserException {
+        Sitemap sitemap = Sitemap.parse("https://example.com/sitemap.xml", URLSET.getBytes(StandardCharsets.UTF_8));
+
+        assertUrlset(sitemap);
+    }
+
+    @Test
+    void detectsGzipByContent() throws WebParserException, IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream output = new GZIPOutputStream(gzipped)) {
+            output.write(URLSET.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // the URL does not end with .gz, only the magic bytes tell
+        assertUrlset(Sitemap.parse("https://example.com/sitemap.xml", gzipped.toByteArray()));
+    }
+
+    @Test
+    void parsesSitemapIndex() throws WebParserException {
+        String index = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n" +
+                "  <sitemap><loc>https://example.com/sitemap-news.xml.gz</loc>" +
+                "<lastmod>2023-05-01</lastmod></sitemap>\n" +
+                "  <sitemap><loc>https://example.com/sitemap-pages.xml</loc></sitemap>\n" +
+                "</sitemapindex>\n";
+
+        Sitemap sitemap = Sitemap.parse("https://example.com/sitemap.xml", index.getBytes(StandardCharsets.UTF_8));
+        assertTrue(sitemap.getUrls().isEmpty());
+        assertEquals(List.of("https://example.com/sitemap-news.xml.gz", "https://example.com/sitemap-pages.xml"),
+                sitemap.getSitemaps());
+    }
+
+    @Test
+    void rejectsMalformedXml() {
+        assertThrows(WebParserException.class, () -> Sitemap.parse("https://example.com/sitemap.xml",
+                "<urlset><url><loc>https://example.com/".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void assertUrlset(Sitemap sitemap) {
+        List<SitemapUrl> urls = sitemap.getUrls();
+        assertEquals(3, urls.size());
+        assertEquals("https://example.com/", urls.get(0).getUrl());
+        assertEquals(Instant.parse("2023-05-01T00:00:00Z"), urls.get(0).getLastModified());
+        assertEquals("https://example.com/news/1", urls.get(1).getUrl());
+        assertEquals(Instant.parse("2023-05-02T07:15:00Z"), urls.get(1).getLastModified());
+        assertEquals("https://example.com/about", urls.get(2).getUrl());
+        assertNull(urls.get(2).getLastModified());
+        assertTrue(sitemap.getSitemaps().isEmpty());
+    }
+}
@@ -0,0 +1,129 @@
+package searchengine.services.searching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link PostingList} encoding: in-order appends, out-of-order postings merged on read, removal.
+ */
+class PostingListTest {
+
+    @Test
+    void mergesPendingPostingsInPageIdOrder() {
+        PostingList postings = new PostingList();
+        postings.add(10, 1);
+        postings.add(300, 2);
+        postings.add(5, 3);
+        postings.add(150, 4);
+        postings.add(100_000, 5);
+
+        assertEquals(List.of(5L, 10L, 150L, 300L, 100_000L), pageIds(postings));
+        assertEquals(List.of(3, 1, 4, 2, 5), ranks(postings));
+        assertEquals(5, postings.size());
+        // appends after the merge go in place again
+        postings.add(200_000, 6);
+        assertEquals(List.of(5L, 10L, 150L, 300L, 100_000L, 200_000L), pageIds(postings));
+    }
+
+    @Test
+    void keepsLastRankOfDuplicatePageId() {
+        PostingList postings = new PostingList();
+        postings.add(1, 1);
+        postings.add(7, 2);
+        postings.add(7, 3);
+        postings.add(1, 4);
+        postings.add(7, 5);
+
+        assertEquals(List.of(1L, 7L), pageIds(postings));
+        assertEquals(List.of(4, 5), ranks(postings));
+        assertEquals(2, postings.cursor().size());
+    }
+
+    @Test
+    void removeReencodesRemainingPostings() {
+        PostingList postings = new PostingList();
+        postings.add(3, 1);
+        postings.add(200, 2);
+        postings.add(1_000, 3);
+        postings.add(50, 4);
+
+        assertTrue(postings.remove(200));
+        assertFalse(postings.remove(200));
+        assertFalse(postings.remove(4));
+        assertEquals(List.of(3L, 50L, 1_000L), pageIds(postings));
+        assertEquals(List.of(1, 4, 3), ranks(postings));
+        // the delta after the removed page is taken from the page before it
+        assertTrue(postings.remove(3));
+        assertEquals(List.of(50L, 1_000L), pageIds(postings));
+        postings.add(2_000, 5);
+        assertEquals(List.of(50L, 1_000L, 2_000L), pageIds(postings));
+    }
+
+    @Test
+    void removesPendingPosting() {
+        PostingList postings = new PostingList();
+        postings.add(20, 1);
+        postings.add(10, 2);
+
+        assertTrue(postings.remove(10));
+        assertEquals(List.of(20L), pageIds(postings));
+        assertEquals(1, postings.size());
+    }
+
+    @Test
+    void advanceToStopsAtFirstPageIdNotLess() {
+        PostingList postings = new PostingList();
+        for (long pageId : new long[]{2, 4, 8, 16, 32}) {
+            postings.add(pageId, (int) pageId);
+        }
+
+        PostingList.Cursor cursor = postings.cursor();
+        assertTrue(cursor.advanceTo(5));
+        assertEquals(8, cursor.pageId());
+        assertEquals(8, cursor.rank());
+        assertTrue(cursor.advanceTo(16));
+        assertEquals(16, cursor.pageId());
+        assertFalse(cursor.advanceTo(33));
+
+        PostingList.Cursor exact = postings.cursor();
+        assertTrue(exact.advanceTo(2));
+        assertEquals(2, exact.pageId());
+        assertTrue(exact.next());
+        assertEquals(4, exact.pageId());
+    }
+
+    @Test
+    void cursorIsSnapshot() {
+        PostingList postings = new PostingList();
+        postings.add(1, 1);
+        PostingList.Cursor cursor = postings.cursor();
+        postings.add(2, 1);
+        postings.remove(1);
+
+        assertTrue(cursor.next());
+        assertEquals(1, cursor.pageId());
+        assertFalse(cursor.next());
+    }
+
+    private static List<Long> pageIds(PostingList postings) {
+        List<Long> pageIds = new ArrayList<>();
+        PostingList.Cursor cursor = postings.cursor();
+        while (cursor.next()) {
+            pageIds.add(cursor.pageId());
+        }
+        return pageIds;
+    }
+
+    private static List<Integer> ranks(PostingList postings) {
+        List<Integer> ranks = new ArrayList<>();
+        PostingList.Cursor cursor = postings.cursor();
+        while (cursor.next()) {
+            ranks.add(cursor.rank());
+        }
+        return ranks;
+    }
+}